@@ -0,0 +1,347 @@
+/**------------------------------------------------------------
+ * Compilation:    javac ConcurrentPercolation.java
+ * Execution:      java ConcurrentPercolation GridSize [Threads]
+ *
+ * Thread-safe percolation model. open, isOpen, isFull and
+ * percolates can be called from any number of threads without
+ * locking.
+ *
+ * Open sites are kept in an atomic bitset. Clusters are kept in
+ * a CAS based union-find: roots are linked by a fixed pseudo
+ * random priority (randomized linking) and paths are halved
+ * with CAS, so no thread ever waits on another one. As in
+ * Percolation, every root carries "touches top" and "touches
+ * bottom" flags instead of virtual sites.
+ *
+ * Once open returns, its effects are visible to every later
+ * query. Queries running at the same time as open may or may
+ * not see that open yet.
+ *
+ *------------------------------------------------------------*/
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class ConcurrentPercolation {
+
+    private static final int TOUCHES_TOP = 1;
+    private static final int TOUCHES_BOTTOM = 2;
+    private static final int TOUCHES_BOTH = TOUCHES_TOP | TOUCHES_BOTTOM;
+
+    //Size of the system
+    private final int n;
+
+    //Bit (i * n + j) is set if site (i, j) is open, 0 based
+    private final AtomicLongArray openWords;
+
+    //Union-find parent links, child always has lower priority
+    private final AtomicIntegerArray parent;
+    //TOUCHES_TOP / TOUCHES_BOTTOM flags, complete at roots once
+    //every open that set them has returned
+    private final AtomicIntegerArray touches;
+
+    private volatile boolean percolates = false;
+
+    /**------------------------------------------------------------
+     * Create N-by-N grid, with all sites blocked
+     *------------------------------------------------------------*/
+    public ConcurrentPercolation(int N) {
+        if (N <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.n = N;
+        this.openWords = new AtomicLongArray((n * n + 63) >>> 6);
+        this.parent = new AtomicIntegerArray(n * n);
+        this.touches = new AtomicIntegerArray(n * n);
+
+        for (int i = 0; i < n * n; i++) {
+            parent.set(i, i);
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Open site (row i, column j) if it is not already
+     *------------------------------------------------------------*/
+    public void open(int i, int j) {
+        checkBounds(i, j);
+
+        int rowIndex = i - 1;
+        int columnIndex = j - 1;
+        int index = rowIndex * n + columnIndex;
+
+        //Only the thread which actually opened the site connects it
+        if (!markOpen(index)) {
+            return;
+        }
+
+        int flags = 0;
+        if (rowIndex == 0) {
+            flags |= TOUCHES_TOP;
+        }
+        if (rowIndex == n - 1) {
+            flags |= TOUCHES_BOTTOM;
+        }
+        if (flags != 0) {
+            addFlags(index, flags);
+        }
+
+        //If two neighbours are opened at the same time, at least
+        //one of the threads sees the other site open
+        if (rowIndex > 0 && isOpen(index - n)) {
+            union(index, index - n);
+        }
+        if (rowIndex < n - 1 && isOpen(index + n)) {
+            union(index, index + n);
+        }
+        if (columnIndex > 0 && isOpen(index - 1)) {
+            union(index, index - 1);
+        }
+        if (columnIndex < n - 1 && isOpen(index + 1)) {
+            union(index, index + 1);
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Returns true if site (row i, column j) is opened
+     *------------------------------------------------------------*/
+    public boolean isOpen(int i, int j) {
+        checkBounds(i, j);
+        return isOpen((i - 1) * n + (j - 1));
+    }
+
+    /**------------------------------------------------------------
+     * Returns true if site (row i, column j) is full
+     *------------------------------------------------------------*/
+    public boolean isFull(int i, int j) {
+        checkBounds(i, j);
+
+        int index = (i - 1) * n + (j - 1);
+        if (!isOpen(index)) {
+            return false;
+        }
+
+        //Flags of every node on the path are checked, not only of
+        //the root, because a union in progress may not have copied
+        //them to the new root yet
+        int flags = 0;
+        int x = index;
+        while (true) {
+            flags |= touches.get(x);
+            int p = parent.get(x);
+            if (p == x) {
+                break;
+            }
+            flags |= touches.get(p);
+            int grandparent = parent.get(p);
+            if (p != grandparent) {
+                parent.compareAndSet(x, p, grandparent);
+            }
+            x = grandparent;
+        }
+        return (flags & TOUCHES_TOP) != 0;
+    }
+
+    /**------------------------------------------------------------
+     * Returns true if the system percolates
+     *------------------------------------------------------------*/
+    public boolean percolates() {
+        return percolates;
+    }
+
+    /**------------------------------------------------------------
+     * Returns true if site with 1D index is open
+     *------------------------------------------------------------*/
+    private boolean isOpen(int index) {
+        return (openWords.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**------------------------------------------------------------
+     * Sets open bit of site, returns false if it was already set
+     *------------------------------------------------------------*/
+    private boolean markOpen(int index) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        while (true) {
+            long old = openWords.get(word);
+            if ((old & bit) != 0) {
+                return false;
+            }
+            if (openWords.compareAndSet(word, old, old | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Returns root of the component containing site p, halving
+     * the path with CAS on the way up
+     *------------------------------------------------------------*/
+    private int find(int p) {
+        while (true) {
+            int q = parent.get(p);
+            if (q == p) {
+                return p;
+            }
+            int grandparent = parent.get(q);
+            if (q != grandparent) {
+                parent.compareAndSet(p, q, grandparent);
+            }
+            p = grandparent;
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Merges components of sites p and q by linking the root with
+     * lower priority under the other one, retrying if another
+     * thread linked either root first
+     *------------------------------------------------------------*/
+    private void union(int p, int q) {
+        while (true) {
+            int rootP = find(p);
+            int rootQ = find(q);
+            if (rootP == rootQ) {
+                return;
+            }
+
+            if (lowerPriority(rootQ, rootP)) {
+                int tmp = rootP;
+                rootP = rootQ;
+                rootQ = tmp;
+            }
+
+            //rootP has lower priority and goes under rootQ
+            if (parent.compareAndSet(rootP, rootP, rootQ)) {
+                //Flags are read after linking, so flags added to rootP
+                //concurrently are either seen here or pushed up by
+                //addFlags itself
+                int flags = touches.get(rootP);
+                if (flags != 0) {
+                    addFlags(rootQ, flags);
+                }
+                return;
+            }
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Adds flags to the root of site p. If the root gets linked
+     * under another one meanwhile, flags are pushed further up
+     *------------------------------------------------------------*/
+    private void addFlags(int p, int flags) {
+        while (true) {
+            int root = find(p);
+            int old = touches.get(root);
+            int merged = old | flags;
+            if (old != merged && !touches.compareAndSet(root, old, merged)) {
+                continue;
+            }
+            if (merged == TOUCHES_BOTH) {
+                percolates = true;
+            }
+            if (parent.get(root) == root) {
+                return;
+            }
+            p = root;
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Fixed pseudo random order of sites used for linking roots
+     *------------------------------------------------------------*/
+    private static boolean lowerPriority(int p, int q) {
+        int priorityP = priority(p);
+        int priorityQ = priority(q);
+        return priorityP < priorityQ || (priorityP == priorityQ && p < q);
+    }
+
+    /**------------------------------------------------------------
+     * Scrambles site index into its priority
+     *------------------------------------------------------------*/
+    private static int priority(int index) {
+        int h = index * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+
+    /**------------------------------------------------------------
+     * Checks if input parameters are within system defined bounds
+     * and throws IndexOutOfBoundsException if they are not
+     *------------------------------------------------------------*/
+    private void checkBounds(int i, int j) {
+        if (i < 1 || i > this.n) {
+            throw new IndexOutOfBoundsException("Row index i out of bounds\n");
+        }
+
+        if (j < 1 || j > this.n) {
+            throw new IndexOutOfBoundsException("Column index j out of bounds\n");
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Opens all sites in random order from several threads and
+     * checks the result against sequential Percolation
+     *------------------------------------------------------------*/
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        final int n = Integer.parseInt(args[0]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 1) {
+            threads = Integer.parseInt(args[1]);
+        }
+
+        //Open a bit more than the threshold fraction of sites
+        final int[] sites = new int[n * n];
+        for (int k = 0; k < sites.length; k++) {
+            sites[k] = k;
+        }
+        StdRandom.shuffle(sites);
+        final int opened = (int) (0.6d * sites.length);
+
+        final ConcurrentPercolation concurrent = new ConcurrentPercolation(n);
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int w = 0; w < threads; w++) {
+            final int first = w;
+            final int step = threads;
+            workers[w] = new Thread(new Runnable() {
+                public void run() {
+                    for (int k = first; k < opened; k += step) {
+                        concurrent.open(sites[k] / n + 1, sites[k] % n + 1);
+                    }
+                }
+            });
+            workers[w].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Percolation sequential = new Percolation(n);
+        for (int k = 0; k < opened; k++) {
+            sequential.open(sites[k] / n + 1, sites[k] % n + 1);
+        }
+
+        int mismatches = 0;
+        for (int i = 1; i <= n; i++) {
+            for (int j = 1; j <= n; j++) {
+                if (concurrent.isOpen(i, j) != sequential.isOpen(i, j)
+                        || concurrent.isFull(i, j) != sequential.isFull(i, j)) {
+                    mismatches++;
+                }
+            }
+        }
+        if (concurrent.percolates() != sequential.percolates()) {
+            mismatches++;
+        }
+
+        StdOut.printf("threads                 = %d\n", threads);
+        StdOut.printf("opened sites            = %d\n", opened);
+        StdOut.printf("time                    = %.3f ms\n", elapsed / 1e6);
+        StdOut.printf("mismatches              = %d\n", mismatches);
+    }
+}
@@ -0,0 +1,349 @@
+/**------------------------------------------------------------
+ * Compilation:    javac HoshenKopelman.java
+ * Execution:      java HoshenKopelman grid.txt
+ *
+ * Checks percolation of a fixed N-by-N site configuration
+ * that is fed one row at a time (Hoshen-Kopelman labeling).
+ * Only labels of the previous row are kept, so memory is O(N)
+ * instead of O(N^2) and grids much larger than what fits into
+ * Percolation can be checked.
+ *
+ * Grid file holds N followed by N rows of N characters, '1'
+ * for open and '0' for blocked site. Whitespace (line breaks)
+ * between characters is ignored.
+ *
+ *------------------------------------------------------------*/
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class HoshenKopelman {
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private int n;
+    private int rowsRead = 0;
+    private long openSites = 0;
+
+    //Labels of the last read row, -1 for blocked sites. Labels
+    //are compact, 0 .. labelCount - 1
+    private int[] previous;
+    private int[] current;
+    private int labelCount = 0;
+
+    //Per label data for labels of the previous row (0 .. labelCount)
+    //and new labels of the row being read (labelCount .. 2N)
+    private int[] parent;
+    private long[] clusterSize;
+    private boolean[] touchesTop;
+
+    //Scratch arrays used to compact labels after every row
+    private int[] remap;
+    private long[] compactSize;
+    private boolean[] compactTop;
+
+    //Clusters which did not reach the last read row
+    private long finishedClusters = 0;
+    private long finishedLargest = 0;
+
+    /**------------------------------------------------------------
+     * Prepares empty N-by-N system, rows are fed with addRow
+     *------------------------------------------------------------*/
+    public HoshenKopelman(int N) {
+        if (N <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.n = N;
+        this.previous = new int[n];
+        this.current = new int[n];
+        Arrays.fill(previous, -1);
+
+        this.parent = new int[2 * n];
+        this.clusterSize = new long[2 * n];
+        this.touchesTop = new boolean[2 * n];
+
+        this.remap = new int[2 * n];
+        this.compactSize = new long[n];
+        this.compactTop = new boolean[n];
+        Arrays.fill(remap, -1);
+    }
+
+    /**------------------------------------------------------------
+     * Reads grid from file through a buffered file channel
+     *------------------------------------------------------------*/
+    public static HoshenKopelman fromFile(String filename) {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                                                    StandardOpenOption.READ)) {
+            return read(channel);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Could not read " + filename, ex);
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Reads grid from channel, one row at a time
+     *------------------------------------------------------------*/
+    public static HoshenKopelman read(ReadableByteChannel channel)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        buffer.flip();
+
+        int size = 0;
+        int c = nextNonWhitespace(channel, buffer);
+        if (c < '0' || c > '9') {
+            throw new IllegalArgumentException("Grid size expected\n");
+        }
+        while (c >= '0' && c <= '9') {
+            size = size * 10 + (c - '0');
+            c = nextByte(channel, buffer);
+        }
+
+        HoshenKopelman grid = new HoshenKopelman(size);
+        long[] row = new long[(size + 63) >>> 6];
+        for (int i = 0; i < size; i++) {
+            Arrays.fill(row, 0L);
+            for (int j = 0; j < size; j++) {
+                c = nextNonWhitespace(channel, buffer);
+                if (c == '1') {
+                    row[j >>> 6] |= 1L << j;
+                } else if (c != '0') {
+                    throw new IllegalArgumentException(
+                        "Site (" + (i + 1) + ", " + (j + 1) + ") is not 0 or 1\n");
+                }
+            }
+            grid.addRow(row);
+        }
+        return grid;
+    }
+
+    /**------------------------------------------------------------
+     * Returns next byte from channel, -1 at the end
+     *------------------------------------------------------------*/
+    private static int nextByte(ReadableByteChannel channel, ByteBuffer buffer)
+            throws IOException {
+        while (!buffer.hasRemaining()) {
+            buffer.clear();
+            int read = channel.read(buffer);
+            buffer.flip();
+            if (read < 0) {
+                return -1;
+            }
+        }
+        return buffer.get();
+    }
+
+    /**------------------------------------------------------------
+     * Returns next byte from channel which is not whitespace
+     *------------------------------------------------------------*/
+    private static int nextNonWhitespace(ReadableByteChannel channel,
+                                         ByteBuffer buffer) throws IOException {
+        int c = nextByte(channel, buffer);
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            c = nextByte(channel, buffer);
+        }
+        if (c < 0) {
+            throw new IllegalArgumentException("Unexpected end of grid\n");
+        }
+        return c;
+    }
+
+    /**------------------------------------------------------------
+     * Adds next row, top to bottom. Bit j of row (bit j % 64 of
+     * word j / 64) is set if site in column j + 1 is open
+     *------------------------------------------------------------*/
+    public void addRow(long[] row) {
+        if (rowsRead == n) {
+            throw new IllegalStateException("All rows already read\n");
+        }
+        if (row.length < (n + 63) >>> 6) {
+            throw new IllegalArgumentException("Row is shorter than grid\n");
+        }
+
+        int nextLabel = labelCount;
+        for (int j = 0; j < n; j++) {
+            if ((row[j >>> 6] & (1L << j)) == 0) {
+                current[j] = -1;
+                continue;
+            }
+
+            openSites++;
+
+            //Continue left neighbour's label or start a new one
+            int label;
+            if (j > 0 && current[j - 1] >= 0) {
+                label = current[j - 1];
+            } else {
+                label = nextLabel++;
+                parent[label] = label;
+                clusterSize[label] = 0;
+                touchesTop[label] = rowsRead == 0;
+            }
+            current[j] = label;
+            clusterSize[find(label)]++;
+
+            if (previous[j] >= 0) {
+                union(label, previous[j]);
+            }
+        }
+
+        compactLabels(nextLabel);
+        rowsRead++;
+    }
+
+    /**------------------------------------------------------------
+     * Counts clusters of the previous row which did not continue
+     * into the current one and relabels current row compactly,
+     * so current row becomes previous row
+     *------------------------------------------------------------*/
+    private void compactLabels(int usedLabels) {
+        int compactCount = 0;
+        for (int j = 0; j < n; j++) {
+            if (current[j] < 0) {
+                continue;
+            }
+            int root = find(current[j]);
+            if (remap[root] < 0) {
+                remap[root] = compactCount;
+                compactSize[compactCount] = clusterSize[root];
+                compactTop[compactCount] = touchesTop[root];
+                compactCount++;
+            }
+        }
+
+        for (int label = 0; label < labelCount; label++) {
+            int root = find(label);
+            if (remap[root] == -1) {
+                finishedClusters++;
+                finishedLargest = Math.max(finishedLargest, clusterSize[root]);
+                //Mark as counted
+                remap[root] = -2;
+            }
+        }
+
+        for (int j = 0; j < n; j++) {
+            previous[j] = current[j] < 0 ? -1 : remap[find(current[j])];
+        }
+
+        for (int label = 0; label < compactCount; label++) {
+            parent[label] = label;
+            clusterSize[label] = compactSize[label];
+            touchesTop[label] = compactTop[label];
+        }
+        Arrays.fill(remap, 0, usedLabels, -1);
+        labelCount = compactCount;
+    }
+
+    /**------------------------------------------------------------
+     * Returns root label, halving the path on the way up
+     *------------------------------------------------------------*/
+    private int find(int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    /**------------------------------------------------------------
+     * Merges clusters of labels p and q
+     *------------------------------------------------------------*/
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            return;
+        }
+
+        parent[rootQ] = rootP;
+        clusterSize[rootP] += clusterSize[rootQ];
+        touchesTop[rootP] |= touchesTop[rootQ];
+    }
+
+    /**------------------------------------------------------------
+     * Returns number of rows read so far
+     *------------------------------------------------------------*/
+    public int rowsRead() {
+        return rowsRead;
+    }
+
+    /**------------------------------------------------------------
+     * Returns number of open sites in rows read so far
+     *------------------------------------------------------------*/
+    public long openSites() {
+        return openSites;
+    }
+
+    /**------------------------------------------------------------
+     * Returns false if no cluster of the last read row touches the
+     * top, in which case remaining rows cannot make the system
+     * percolate
+     *------------------------------------------------------------*/
+    public boolean canPercolate() {
+        if (rowsRead == 0) {
+            return true;
+        }
+        for (int label = 0; label < labelCount; label++) {
+            if (touchesTop[label]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**------------------------------------------------------------
+     * Returns true if the system percolates, all rows must be read
+     *------------------------------------------------------------*/
+    public boolean percolates() {
+        checkAllRowsRead();
+        return canPercolate();
+    }
+
+    /**------------------------------------------------------------
+     * Returns number of open clusters in rows read so far
+     *------------------------------------------------------------*/
+    public long clusterCount() {
+        return finishedClusters + labelCount;
+    }
+
+    /**------------------------------------------------------------
+     * Returns number of sites in the largest open cluster in rows
+     * read so far
+     *------------------------------------------------------------*/
+    public long largestClusterSize() {
+        long largest = finishedLargest;
+        for (int label = 0; label < labelCount; label++) {
+            largest = Math.max(largest, clusterSize[label]);
+        }
+        return largest;
+    }
+
+    /**------------------------------------------------------------
+     * Throws IllegalStateException if not all rows are read
+     *------------------------------------------------------------*/
+    private void checkAllRowsRead() {
+        if (rowsRead < n) {
+            throw new IllegalStateException("Only " + rowsRead + " of " + n
+                                            + " rows read\n");
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Reads grid from file and prints its statistics
+     *------------------------------------------------------------*/
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        HoshenKopelman grid = HoshenKopelman.fromFile(args[0]);
+        StdOut.printf("open sites              = %d\n", grid.openSites());
+        StdOut.printf("clusters                = %d\n", grid.clusterCount());
+        StdOut.printf("largest cluster         = %d\n", grid.largestClusterSize());
+        StdOut.println(grid.percolates() ? "percolates" : "does not percolate");
+    }
+}
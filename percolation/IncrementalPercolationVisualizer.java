@@ -0,0 +1,193 @@
+/****************************************************************************
+ *  Compilation:  javac IncrementalPercolationVisualizer.java
+ *  Execution:    java IncrementalPercolationVisualizer input.txt [FrameSkip]
+ *  Dependencies: Percolation.java In.java
+ *
+ *  Same input as PercolationVisualizer, but the grid is kept in an
+ *  off-screen image and only cells that changed are repainted. After
+ *  each open that is the opened cell plus the cells that turned full
+ *  in that step, found by flood fill from the opened cell. Every cell
+ *  turns full at most once, so the whole replay costs O(N^2) cell
+ *  updates instead of O(N^2) per opened site.
+ *
+ *  With FrameSkip k the window is refreshed only after every k-th
+ *  opened site (and once at the end), which is useful for large files.
+ *
+ ****************************************************************************/
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+
+public class IncrementalPercolationVisualizer extends JComponent {
+
+    // delay in miliseconds (controls animation speed)
+    private static final int DELAY = 100;
+
+    // preferred size of the grid in pixels
+    private static final int CANVAS_SIZE = 512;
+
+    private static final Color BLOCKED = Color.BLACK;
+    private static final Color OPEN = Color.WHITE;
+    private static final Color FULL = new Color(103, 198, 243);
+
+    private final Percolation perc;
+    private final int N;
+    private final int cellSize;
+    private final BufferedImage image;
+
+    // cells already painted as full
+    private final boolean[] paintedFull;
+    // flood fill stack of 0 based site indices
+    private final int[] stack;
+
+    // cells painted since last refresh, in cell coordinates
+    private Rectangle dirty;
+
+    public IncrementalPercolationVisualizer(Percolation perc, int N) {
+        this.perc = perc;
+        this.N = N;
+        this.cellSize = Math.max(1, CANVAS_SIZE / N);
+        this.image = new BufferedImage(N * cellSize, N * cellSize,
+                                       BufferedImage.TYPE_INT_RGB);
+        this.paintedFull = new boolean[N * N];
+        this.stack = new int[N * N];
+
+        Graphics2D g = image.createGraphics();
+        g.setColor(BLOCKED);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.dispose();
+
+        setPreferredSize(new Dimension(image.getWidth(), image.getHeight()));
+    }
+
+    // paint cells changed by opening site (i, j), which must already be open
+    public void opened(int i, int j) {
+        int site = (i - 1) * N + (j - 1);
+        if (!perc.isFull(i, j)) {
+            paintCell(site, OPEN);
+            return;
+        }
+        if (paintedFull[site]) {
+            return;
+        }
+
+        // every open cell reachable from a full cell is full
+        int top = 0;
+        paintedFull[site] = true;
+        stack[top++] = site;
+        while (top > 0) {
+            int current = stack[--top];
+            paintCell(current, FULL);
+
+            int row = current / N;
+            int col = current % N;
+            if (row > 0)     top = push(current - N, top);
+            if (row < N - 1) top = push(current + N, top);
+            if (col > 0)     top = push(current - 1, top);
+            if (col < N - 1) top = push(current + 1, top);
+        }
+    }
+
+    private int push(int site, int top) {
+        if (!paintedFull[site] && perc.isOpen(site / N + 1, site % N + 1)) {
+            paintedFull[site] = true;
+            stack[top++] = site;
+        }
+        return top;
+    }
+
+    private void paintCell(int site, Color color) {
+        int row = site / N;
+        int col = site % N;
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        // leave a one pixel gap between cells when there is room for it
+        int gap = cellSize > 3 ? 1 : 0;
+        g.fillRect(col * cellSize, row * cellSize, cellSize - gap, cellSize - gap);
+        g.dispose();
+
+        Rectangle cell = new Rectangle(col, row, 1, 1);
+        if (dirty == null) dirty = cell;
+        else               dirty.add(cell);
+    }
+
+    // ask Swing to repaint the area changed since the last refresh
+    public void refresh() {
+        if (dirty == null) return;
+        repaint(dirty.x * cellSize, dirty.y * cellSize,
+                dirty.width * cellSize, dirty.height * cellSize);
+        dirty = null;
+    }
+
+    @Override
+    protected synchronized void paintComponent(Graphics g) {
+        g.drawImage(image, 0, 0, null);
+    }
+
+    public static void main(String[] args) throws InterruptedException,
+                                                  InvocationTargetException {
+        In in = new In(args[0]);      // input file
+        int N = in.readInt();         // N-by-N percolation system
+        int frameSkip = 1;
+        if (args.length > 1) frameSkip = Integer.parseInt(args[1]);
+
+        Percolation perc = new Percolation(N);
+        final IncrementalPercolationVisualizer canvas =
+            new IncrementalPercolationVisualizer(perc, N);
+        final JLabel status = new JLabel(" ");
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                JFrame frame = new JFrame("Percolation");
+                frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+                frame.add(canvas);
+                frame.add(status, BorderLayout.SOUTH);
+                frame.pack();
+                frame.setVisible(true);
+            }
+        });
+
+        // repeatedly read in sites to open and draw resulting system
+        int sinceRefresh = 0;
+        while (!in.isEmpty()) {
+            int i = in.readInt();
+            int j = in.readInt();
+            // cells are painted on this thread, the canvas lock keeps
+            // Swing from copying a half painted image to the screen
+            synchronized (canvas) {
+                perc.open(i, j);
+                canvas.opened(i, j);
+            }
+            if (++sinceRefresh >= frameSkip || in.isEmpty()) {
+                sinceRefresh = 0;
+                show(canvas, status, perc);
+                Thread.sleep(DELAY);
+            }
+        }
+        show(canvas, status, perc);
+    }
+
+    private static void show(final IncrementalPercolationVisualizer canvas,
+                             final JLabel status, Percolation perc) {
+        final String text = perc.openCount() + " open sites, "
+            + (perc.percolates() ? "percolates" : "does not percolate");
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                synchronized (canvas) {
+                    canvas.refresh();
+                }
+                status.setText(text);
+            }
+        });
+    }
+}
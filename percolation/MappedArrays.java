@@ -0,0 +1,287 @@
+/**------------------------------------------------------------
+ * Compilation:    javac MappedArrays.java
+ *
+ * Bulk copies of primitive arrays to and from a file through
+ * memory-mapped regions. Data goes straight between the array
+ * and the page cache, without intermediate heap buffers. Large
+ * arrays are mapped in several regions, because a single
+ * mapping is limited to 2GB.
+ *
+ * LongView, IntView and ByteView access values of a file in
+ * place instead, so data is paged in only when it is touched.
+ *
+ *------------------------------------------------------------*/
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+public class MappedArrays {
+
+    //Byte order of all mapped data
+    public static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private static final int MAX_REGION_SIZE = 1 << 30;
+
+    private MappedArrays() {
+    }
+
+    /**------------------------------------------------------------
+     * Writes values at position, returns position after them
+     *------------------------------------------------------------*/
+    public static long write(FileChannel channel, long position, long[] values)
+            throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            int count = Math.min(values.length - offset, MAX_REGION_SIZE / 8);
+            map(channel, MapMode.READ_WRITE, position, count * 8L)
+                .asLongBuffer().put(values, offset, count);
+            offset += count;
+            position += count * 8L;
+        }
+        return position;
+    }
+
+    /**------------------------------------------------------------
+     * Writes values at position, returns position after them
+     *------------------------------------------------------------*/
+    public static long write(FileChannel channel, long position, int[] values)
+            throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            int count = Math.min(values.length - offset, MAX_REGION_SIZE / 4);
+            map(channel, MapMode.READ_WRITE, position, count * 4L)
+                .asIntBuffer().put(values, offset, count);
+            offset += count;
+            position += count * 4L;
+        }
+        return position;
+    }
+
+    /**------------------------------------------------------------
+     * Writes values at position, returns position after them
+     *------------------------------------------------------------*/
+    public static long write(FileChannel channel, long position, byte[] values)
+            throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            int count = Math.min(values.length - offset, MAX_REGION_SIZE);
+            map(channel, MapMode.READ_WRITE, position, count)
+                .put(values, offset, count);
+            offset += count;
+            position += count;
+        }
+        return position;
+    }
+
+    /**------------------------------------------------------------
+     * Fills values from position, returns position after them
+     *------------------------------------------------------------*/
+    public static long read(FileChannel channel, long position, long[] values)
+            throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            int count = Math.min(values.length - offset, MAX_REGION_SIZE / 8);
+            map(channel, MapMode.READ_ONLY, position, count * 8L)
+                .asLongBuffer().get(values, offset, count);
+            offset += count;
+            position += count * 8L;
+        }
+        return position;
+    }
+
+    /**------------------------------------------------------------
+     * Fills values from position, returns position after them
+     *------------------------------------------------------------*/
+    public static long read(FileChannel channel, long position, int[] values)
+            throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            int count = Math.min(values.length - offset, MAX_REGION_SIZE / 4);
+            map(channel, MapMode.READ_ONLY, position, count * 4L)
+                .asIntBuffer().get(values, offset, count);
+            offset += count;
+            position += count * 4L;
+        }
+        return position;
+    }
+
+    /**------------------------------------------------------------
+     * Fills values from position, returns position after them
+     *------------------------------------------------------------*/
+    public static long read(FileChannel channel, long position, byte[] values)
+            throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            int count = Math.min(values.length - offset, MAX_REGION_SIZE);
+            map(channel, MapMode.READ_ONLY, position, count)
+                .get(values, offset, count);
+            offset += count;
+            position += count;
+        }
+        return position;
+    }
+
+    /**------------------------------------------------------------
+     * long values of a file region accessed in place. The region
+     * is mapped in pieces of 2^27 values, so it may exceed 2GB
+     *------------------------------------------------------------*/
+    public static class LongView {
+
+        private static final int PIECE_SHIFT = 27;
+        private static final int PIECE_MASK = (1 << PIECE_SHIFT) - 1;
+
+        private final LongBuffer[] pieces;
+
+        /**------------------------------------------------------------
+         * Maps length values starting at position
+         *------------------------------------------------------------*/
+        public LongView(FileChannel channel, MapMode mode, long position,
+                        int length) throws IOException {
+            pieces = new LongBuffer[(int) (((long) length + PIECE_MASK) >>> PIECE_SHIFT)];
+            for (int k = 0; k < pieces.length; k++) {
+                long first = (long) k << PIECE_SHIFT;
+                long count = Math.min(length - first, 1L << PIECE_SHIFT);
+                pieces[k] = map(channel, mode, position + first * 8, count * 8)
+                    .asLongBuffer();
+            }
+        }
+
+        public long get(int i) {
+            return pieces[i >>> PIECE_SHIFT].get(i & PIECE_MASK);
+        }
+
+        public void set(int i, long value) {
+            pieces[i >>> PIECE_SHIFT].put(i & PIECE_MASK, value);
+        }
+
+        /**------------------------------------------------------------
+         * Writes all values at position, returns position after them
+         *------------------------------------------------------------*/
+        public long writeTo(FileChannel channel, long position)
+                throws IOException {
+            for (LongBuffer piece : pieces) {
+                LongBuffer values = piece.duplicate();
+                values.clear();
+                long bytes = values.remaining() * 8L;
+                map(channel, MapMode.READ_WRITE, position, bytes)
+                    .asLongBuffer().put(values);
+                position += bytes;
+            }
+            return position;
+        }
+    }
+
+    /**------------------------------------------------------------
+     * int values of a file region accessed in place. The region
+     * is mapped in pieces of 2^28 values, so it may exceed 2GB
+     *------------------------------------------------------------*/
+    public static class IntView {
+
+        private static final int PIECE_SHIFT = 28;
+        private static final int PIECE_MASK = (1 << PIECE_SHIFT) - 1;
+
+        private final IntBuffer[] pieces;
+
+        /**------------------------------------------------------------
+         * Maps length values starting at position
+         *------------------------------------------------------------*/
+        public IntView(FileChannel channel, MapMode mode, long position,
+                       int length) throws IOException {
+            pieces = new IntBuffer[(int) (((long) length + PIECE_MASK) >>> PIECE_SHIFT)];
+            for (int k = 0; k < pieces.length; k++) {
+                long first = (long) k << PIECE_SHIFT;
+                long count = Math.min(length - first, 1L << PIECE_SHIFT);
+                pieces[k] = map(channel, mode, position + first * 4, count * 4)
+                    .asIntBuffer();
+            }
+        }
+
+        public int get(int i) {
+            return pieces[i >>> PIECE_SHIFT].get(i & PIECE_MASK);
+        }
+
+        public void set(int i, int value) {
+            pieces[i >>> PIECE_SHIFT].put(i & PIECE_MASK, value);
+        }
+
+        /**------------------------------------------------------------
+         * Writes all values at position, returns position after them
+         *------------------------------------------------------------*/
+        public long writeTo(FileChannel channel, long position)
+                throws IOException {
+            for (IntBuffer piece : pieces) {
+                IntBuffer values = piece.duplicate();
+                values.clear();
+                long bytes = values.remaining() * 4L;
+                map(channel, MapMode.READ_WRITE, position, bytes)
+                    .asIntBuffer().put(values);
+                position += bytes;
+            }
+            return position;
+        }
+    }
+
+    /**------------------------------------------------------------
+     * byte values of a file region accessed in place. The region
+     * is mapped in pieces of 2^30 values, so it may exceed 2GB
+     *------------------------------------------------------------*/
+    public static class ByteView {
+
+        private static final int PIECE_SHIFT = 30;
+        private static final int PIECE_MASK = (1 << PIECE_SHIFT) - 1;
+
+        private final ByteBuffer[] pieces;
+
+        /**------------------------------------------------------------
+         * Maps length values starting at position
+         *------------------------------------------------------------*/
+        public ByteView(FileChannel channel, MapMode mode, long position,
+                        int length) throws IOException {
+            pieces = new ByteBuffer[(int) (((long) length + PIECE_MASK) >>> PIECE_SHIFT)];
+            for (int k = 0; k < pieces.length; k++) {
+                long first = (long) k << PIECE_SHIFT;
+                long count = Math.min(length - first, 1L << PIECE_SHIFT);
+                pieces[k] = map(channel, mode, position + first, count);
+            }
+        }
+
+        public byte get(int i) {
+            return pieces[i >>> PIECE_SHIFT].get(i & PIECE_MASK);
+        }
+
+        public void set(int i, byte value) {
+            pieces[i >>> PIECE_SHIFT].put(i & PIECE_MASK, value);
+        }
+
+        /**------------------------------------------------------------
+         * Writes all values at position, returns position after them
+         *------------------------------------------------------------*/
+        public long writeTo(FileChannel channel, long position)
+                throws IOException {
+            for (ByteBuffer piece : pieces) {
+                ByteBuffer values = piece.duplicate();
+                values.clear();
+                long bytes = values.remaining();
+                map(channel, MapMode.READ_WRITE, position, bytes).put(values);
+                position += bytes;
+            }
+            return position;
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Maps region of the channel in ORDER byte order
+     *------------------------------------------------------------*/
+    private static MappedByteBuffer map(FileChannel channel, MapMode mode,
+                                        long position, long size)
+            throws IOException {
+        MappedByteBuffer region = channel.map(mode, position, size);
+        region.order(ORDER);
+        return region;
+    }
+}
@@ -0,0 +1,183 @@
+/**------------------------------------------------------------
+ * Compilation:    javac NewmanZiff.java
+ * Execution:      java NewmanZiff GridSize NoSamples [Seed]
+ *
+ * Newman-Ziff single sweep over N-by-N percolation system.
+ * Every trial opens all N*N sites in one random order and
+ * records, after each opened site, whether the system
+ * percolates and the size of the largest cluster. Averaged over
+ * trials this gives both observables as a function of number
+ * of open sites k, and convolving with the binomial
+ * distribution gives them as a function of site probability p.
+ *
+ *------------------------------------------------------------*/
+import java.util.SplittableRandom;
+
+public class NewmanZiff {
+
+    private int n;
+    private int t;
+
+    //Indexed by number of open sites k, 0 .. N*N
+    private double[] percolationProbability;
+    private double[] largestClusterFraction;
+
+    /**------------------------------------------------------------
+     * Performs T sweeps on an N-by-N grid
+     *------------------------------------------------------------*/
+    public NewmanZiff(int N, int T, long seed) {
+        if (N <= 0 || T <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.n = N;
+        this.t = T;
+
+        int sites = n * n;
+        long[] percolatingTrials = new long[sites + 1];
+        long[] largestClusterSum = new long[sites + 1];
+
+        SplittableRandom master = new SplittableRandom(seed);
+        Percolation percolation = new Percolation(n);
+        RandomSiteOrder order = new RandomSiteOrder(sites);
+        for (int trial = 0; trial < t; trial++) {
+            percolation.reset();
+            order.reset();
+            sweep(percolation, order, master.split(), 
+                  percolatingTrials, largestClusterSum);
+        }
+
+        this.percolationProbability = new double[sites + 1];
+        this.largestClusterFraction = new double[sites + 1];
+        for (int k = 0; k <= sites; k++) {
+            percolationProbability[k] = (double) percolatingTrials[k] / t;
+            largestClusterFraction[k] = 
+                (double) largestClusterSum[k] / ((double) t * sites);
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Opens every site in random order and adds observables
+     * after each opening to the running sums
+     *------------------------------------------------------------*/
+    private void sweep(Percolation percolation, RandomSiteOrder order, 
+                       SplittableRandom random, long[] percolatingTrials, 
+                       long[] largestClusterSum) {
+        for (int k = 1; order.hasNext(); k++) {
+            int site = order.next(random);
+            percolation.open(site / n + 1, site % n + 1);
+
+            if (percolation.percolates()) {
+                percolatingTrials[k]++;
+            }
+            largestClusterSum[k] += percolation.largestClusterSize();
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Fraction of trials that percolate with k open sites
+     *------------------------------------------------------------*/
+    public double percolationProbability(int k) {
+        checkOccupancy(k);
+        return percolationProbability[k];
+    }
+
+    /**------------------------------------------------------------
+     * Average fraction of sites in the largest cluster with k
+     * open sites
+     *------------------------------------------------------------*/
+    public double largestClusterFraction(int k) {
+        checkOccupancy(k);
+        return largestClusterFraction[k];
+    }
+
+    /**------------------------------------------------------------
+     * Probability that the system percolates when every site is
+     * open with probability p
+     *------------------------------------------------------------*/
+    public double percolationProbability(double p) {
+        return convolve(percolationProbability, p);
+    }
+
+    /**------------------------------------------------------------
+     * Average fraction of sites in the largest cluster when every
+     * site is open with probability p
+     *------------------------------------------------------------*/
+    public double largestClusterFraction(double p) {
+        return convolve(largestClusterFraction, p);
+    }
+
+    /**------------------------------------------------------------
+     * Returns sum over k of B(N*N, k, p) * values[k]
+     *------------------------------------------------------------*/
+    private double convolve(double[] values, double p) {
+        if (!(p >= 0.0d && p <= 1.0d)) {
+            throw new IllegalArgumentException("p must be in [0, 1]\n");
+        }
+
+        int sites = values.length - 1;
+        if (p == 0.0d) {
+            return values[0];
+        }
+        if (p == 1.0d) {
+            return values[sites];
+        }
+
+        //Weights are built outwards from the mode, where the
+        //binomial is largest, and normalized at the end
+        int mode = Math.min(sites, (int) Math.floor((sites + 1) * p));
+        double ratio = p / (1.0d - p);
+
+        double weight = 1.0d;
+        double totalWeight = weight;
+        double result = weight * values[mode];
+        for (int k = mode + 1; k <= sites && weight > 0.0d; k++) {
+            weight *= ratio * (sites - k + 1) / k;
+            totalWeight += weight;
+            result += weight * values[k];
+        }
+
+        weight = 1.0d;
+        for (int k = mode - 1; k >= 0 && weight > 0.0d; k--) {
+            weight *= (k + 1) / (ratio * (sites - k));
+            totalWeight += weight;
+            result += weight * values[k];
+        }
+
+        return result / totalWeight;
+    }
+
+    /**------------------------------------------------------------
+     * Checks that k is a valid number of open sites
+     *------------------------------------------------------------*/
+    private void checkOccupancy(int k) {
+        if (k < 0 || k > n * n) {
+            throw new IndexOutOfBoundsException("Number of open sites k out of bounds\n");
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Prints percolation curves around the threshold
+     *------------------------------------------------------------*/
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException();
+        }
+
+        int n = Integer.parseInt(args[0]);
+        int t = Integer.parseInt(args[1]);
+        long seed = (long) (StdRandom.uniform() * Long.MAX_VALUE);
+        if (args.length > 2) {
+            seed = Long.parseLong(args[2]);
+        }
+
+        NewmanZiff sweep = new NewmanZiff(n, t, seed);
+        StdOut.printf("%-8s %-12s %-12s\n", "p", "percolates", "largest");
+        for (int step = 50; step <= 70; step++) {
+            double p = step / 100.0d;
+            StdOut.printf("%-8.2f %-12.6f %-12.6f\n", p, 
+                          sweep.percolationProbability(p), 
+                          sweep.largestClusterFraction(p));
+        }
+    }
+}
@@ -4,135 +4,610 @@
  * Written:        4.2.2014.
  *
  * Compilation:    javac Percolation.java
- * 
- * Impelements percolation model 
- *  
+ *
+ * Impelements percolation model
+ *
+ * Uses a single weighted quick-union structure (with path
+ * halving) instead of virtual top and bottom sites. Every root
+ * carries "touches top" and "touches bottom" flags which are
+ * merged on union, so isFull and percolates are plain root
+ * lookups and there is no backwash.
+ *
+ * State can be saved to a snapshot file and restored later,
+ * see snapshot and restore. restoreMapped resumes from a
+ * snapshot without copying it onto the heap.
+ *
  *------------------------------------------------------------*/
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
 public class Percolation {
-    
-    private static final int TOP_SITE_OFFSET = 1;
-    private static final int BOTTOM_SITE_OFFSET = 2;
-    
-    private boolean[][] openedSpots; //Holds "openess" value of the system
-    
-    //Size of the system and openedSpots grids (Not counting virtual spots)
-    private int n; 
-    
-    //Connected only to top virtual spot, used to check is the spot full
-    private WeightedQuickUnionUF topSystem;
-    //Connected to both virtual spots, used for percolation checking
-    private WeightedQuickUnionUF topBottomSystem; 
-    
+
+    private static final byte TOUCHES_TOP = 1;
+    private static final byte TOUCHES_BOTTOM = 2;
+    private static final byte TOUCHES_BOTH = TOUCHES_TOP | TOUCHES_BOTTOM;
+
+    //Snapshot file starts with a header of eight ints: magic,
+    //version, n, openCount, clusterCount, largestClusterSize,
+    //percolates and a reserved one. It is followed by the open
+    //sites bitset, parent, size and touches arrays
+    private static final int SNAPSHOT_MAGIC = 0x50455243;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_SIZE = 8 * 4;
+
+    //Holds "openess" value of the system, bit i * n + j is set
+    //if site (i, j) is open (0 based)
+    private long[] openedSpots;
+    private int openCount = 0;
+
+    //Size of the system
+    private int n;
+
+    //Union-find parent links and component sizes (valid for roots)
+    private int[] parent;
+    private int[] size;
+    //TOUCHES_TOP / TOUCHES_BOTTOM flags (valid for roots)
+    private byte[] touches;
+
+    //Used instead of the four arrays above when state is mapped
+    //from a snapshot file by restoreMapped
+    private MappedArrays.LongView mappedOpenedSpots;
+    private MappedArrays.IntView mappedParent;
+    private MappedArrays.IntView mappedSize;
+    private MappedArrays.ByteView mappedTouches;
+
+    private boolean percolates = false;
+
+    //Kept up to date on every open and union
+    private int clusterCount = 0;
+    private int largestClusterSize = 0;
+
     /**------------------------------------------------------------
      * Create N-by-N grid, with all sites blocked
      *------------------------------------------------------------*/
     public Percolation(int N) {
         this.n = N;
-        this.openedSpots = new boolean[N][N];
-        
-        for (int i = 0; i < n; i++) {
-            for (int j = 0; j < n; j++) {
-                //Initially the all spots are is closed
-                openedSpots[i][j] = false; 
+        //Initially the all spots are closed
+        this.openedSpots = new long[wordCount(n)];
+
+        this.parent = new int[n * n];
+        this.size = new int[n * n];
+        this.touches = new byte[n * n];
+    }
+
+    /**------------------------------------------------------------
+     * Create N-by-N grid whose state is set up by restoreMapped
+     *------------------------------------------------------------*/
+    private Percolation(int N, FileChannel channel) throws IOException {
+        this.n = N;
+        int sites = n * n;
+        long position = SNAPSHOT_HEADER_SIZE;
+        //Private mapping is copy-on-write: changes stay in memory
+        //and the snapshot file itself is never modified
+        this.mappedOpenedSpots = new MappedArrays.LongView(channel,
+                MapMode.PRIVATE, position, wordCount(n));
+        position += 8L * wordCount(n);
+        this.mappedParent = new MappedArrays.IntView(channel,
+                MapMode.PRIVATE, position, sites);
+        position += 4L * sites;
+        this.mappedSize = new MappedArrays.IntView(channel,
+                MapMode.PRIVATE, position, sites);
+        position += 4L * sites;
+        this.mappedTouches = new MappedArrays.ByteView(channel,
+                MapMode.PRIVATE, position, sites);
+    }
+
+    /**------------------------------------------------------------
+     * Blocks all sites again, reusing already allocated arrays.
+     * Union-find entries are reinitialized when a site is opened
+     *------------------------------------------------------------*/
+    public void reset() {
+        if (openedSpots != null) {
+            Arrays.fill(openedSpots, 0L);
+        } else {
+            for (int word = 0; word < wordCount(n); word++) {
+                mappedOpenedSpots.set(word, 0L);
             }
         }
-        
-        //Extra spaces for virtual sites
-        this.topSystem = new WeightedQuickUnionUF(n * n + 3); 
-        this.topBottomSystem = new WeightedQuickUnionUF(n * n + 3); 
+        openCount = 0;
+        clusterCount = 0;
+        largestClusterSize = 0;
+        percolates = false;
     }
-    
+
     /**------------------------------------------------------------
      * Open site (row i, column j) if it is not already
      *------------------------------------------------------------*/
     public void open(int i, int j) {
         checkBounds(i, j);
-        
+
         int rowIndex = convertToArrayIndex(i);
         int columnIndex = convertToArrayIndex(j);
-        
-        //The spot is already opened
-        if (openedSpots[rowIndex][columnIndex]) {
-            return;
+
+        int index = convert2DTo1DArrayIndex(rowIndex, columnIndex);
+        if (PercolationMetrics.isEnabled()) {
+            PercolationMetrics.recordOpens(1);
         }
-        
-        openedSpots[rowIndex][columnIndex] = true;
-        
-        //Connect to the top neighbour if not in the top row
-        if (rowIndex > 0 && openedSpots[rowIndex - 1][columnIndex]) {
-            connectSpots(rowIndex, columnIndex, rowIndex - 1, columnIndex);
+        if (markOpen(index)) {
+            connectToNeighbours(index);
         }
-        
-        
-        //Connect to the bottom neighbour if not in the bottom row
-        if (rowIndex < n - 1 && openedSpots[rowIndex + 1][columnIndex]) {
-            connectSpots(rowIndex, columnIndex, rowIndex + 1, columnIndex);      
+    }
+
+    /**------------------------------------------------------------
+     * Opens sites (rows[k], cols[k]) for all k. Whole batch is
+     * validated before any site is opened, then sites are marked
+     * open in one pass and connected in row-major order
+     *------------------------------------------------------------*/
+    public void openAll(int[] rows, int[] cols) {
+        if (rows.length != cols.length) {
+            throw new IllegalArgumentException("rows and cols differ in length\n");
         }
-        
-        //Connect to the left neighbour if not in the first column
-        if (columnIndex > 0 && openedSpots[rowIndex][columnIndex - 1]) {
-            connectSpots(rowIndex, columnIndex, rowIndex, columnIndex - 1);
+        for (int k = 0; k < rows.length; k++) {
+            checkBounds(rows[k], cols[k]);
         }
-        
-        //Connect to the right neighbour if not in the last column
-        if (columnIndex < n - 1 && openedSpots[rowIndex][columnIndex + 1]) {
-            connectSpots(rowIndex, columnIndex, rowIndex, columnIndex + 1);
+        if (PercolationMetrics.isEnabled()) {
+            PercolationMetrics.recordOpens(rows.length);
+        }
+
+        int[] opened = new int[rows.length];
+        int openedCount = 0;
+        for (int k = 0; k < rows.length; k++) {
+            int index = convert2DTo1DArrayIndex(convertToArrayIndex(rows[k]),
+                                                convertToArrayIndex(cols[k]));
+            if (markOpen(index)) {
+                opened[openedCount++] = index;
+            }
+        }
+
+        //In row-major order neighbouring sites are connected close
+        //together, which keeps union-find accesses cache friendly
+        Arrays.sort(opened, 0, openedCount);
+        for (int k = 0; k < openedCount; k++) {
+            connectToNeighbours(opened[k]);
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Marks site with 1D index open as its own component. Returns
+     * false if the site was already open
+     *------------------------------------------------------------*/
+    private boolean markOpen(int index) {
+        //The spot is already opened
+        if (isOpen(index)) {
+            return false;
         }
-        
-        //Connect top row to top virtual site
+
+        setWord(index >>> 6, word(index >>> 6) | 1L << index);
+        openCount++;
+
+        //Opened spot starts as its own component
+        setParent(index, index);
+        setSize(index, 1);
+        clusterCount++;
+        largestClusterSize = Math.max(largestClusterSize, 1);
+
+        //Top row touches top, bottom row touches bottom
+        int rowIndex = index / n;
+        byte flags = 0;
         if (rowIndex == 0) {
-            topSystem.union(convert2DTo1DArrayIndex(rowIndex, columnIndex), 
-                         getTopSiteArrayIndex());
-            topBottomSystem.union(convert2DTo1DArrayIndex(rowIndex, columnIndex), 
-                         getTopSiteArrayIndex());
+            flags |= TOUCHES_TOP;
         }
-        
-        //Connect bottom row to bottom virtual site
         if (rowIndex == n - 1) {
-            topBottomSystem.union(convert2DTo1DArrayIndex(rowIndex, columnIndex), 
-                         getBottomSiteArrayIndex());
+            flags |= TOUCHES_BOTTOM;
+        }
+        setTouches(index, flags);
+        if (flags == TOUCHES_BOTH) {
+            percolates = true;
         }
+        return true;
     }
-    
-    private void connectSpots(int spot1Row, int spot1Column, 
-                              int spot2Row, int spot2Column) {
-        topSystem.union(convert2DTo1DArrayIndex(spot1Row, spot1Column), 
-                         convert2DTo1DArrayIndex(spot2Row, spot2Column));
-        topBottomSystem.union(convert2DTo1DArrayIndex(spot1Row, spot1Column), 
-                         convert2DTo1DArrayIndex(spot2Row, spot2Column));
+
+    /**------------------------------------------------------------
+     * Connects open site with 1D index to its open neighbours
+     *------------------------------------------------------------*/
+    private void connectToNeighbours(int index) {
+        int rowIndex = index / n;
+        int columnIndex = index % n;
+
+        //Connect to the top neighbour if not in the top row
+        if (rowIndex > 0 && isOpen(index - n)) {
+            union(index, index - n);
+        }
+
+        //Connect to the bottom neighbour if not in the bottom row
+        if (rowIndex < n - 1 && isOpen(index + n)) {
+            union(index, index + n);
+        }
+
+        //Connect to the left neighbour if not in the first column
+        if (columnIndex > 0 && isOpen(index - 1)) {
+            union(index, index - 1);
+        }
+
+        //Connect to the right neighbour if not in the last column
+        if (columnIndex < n - 1 && isOpen(index + 1)) {
+            union(index, index + 1);
+        }
     }
-    
+
     /**------------------------------------------------------------
      * Returns true if site (row i, column j) is opened
      *------------------------------------------------------------*/
     public boolean isOpen(int i, int j) {
         checkBounds(i, j);
-        
+
         int rowIndex = convertToArrayIndex(i);
         int columnIndex = convertToArrayIndex(j);
-        return openedSpots[rowIndex][columnIndex];
+        return isOpen(convert2DTo1DArrayIndex(rowIndex, columnIndex));
+    }
+
+    /**------------------------------------------------------------
+     * Returns number of open sites
+     *------------------------------------------------------------*/
+    public int openCount() {
+        return openCount;
     }
-     
+
+    /**------------------------------------------------------------
+     * Returns number of open sites in row i, counting a word of
+     * the bitset at a time
+     *------------------------------------------------------------*/
+    public int openSitesInRow(int i) {
+        checkBounds(i, 1);
+
+        int from = convert2DTo1DArrayIndex(convertToArrayIndex(i), 0);
+        int to = from + n;
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+
+        //Masks drop bits before from in the first word and bits
+        //from to onwards in the last one
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (firstWord == lastWord) {
+            return Long.bitCount(word(firstWord) & firstMask & lastMask);
+        }
+
+        int count = Long.bitCount(word(firstWord) & firstMask);
+        for (int word = firstWord + 1; word < lastWord; word++) {
+            count += Long.bitCount(word(word));
+        }
+        return count + Long.bitCount(word(lastWord) & lastMask);
+    }
+
     /**------------------------------------------------------------
      * Returns true if site (row i, column j) is full
      *------------------------------------------------------------*/
     public boolean isFull(int i, int j) {
         checkBounds(i, j);
-        
+
         int rowIndex = convertToArrayIndex(i);
         int columnIndex = convertToArrayIndex(j);
-        return topSystem.connected(convert2DTo1DArrayIndex(rowIndex, columnIndex), 
-                                getTopSiteArrayIndex());
+        int index = convert2DTo1DArrayIndex(rowIndex, columnIndex);
+        if (!isOpen(index)) {
+            return false;
+        }
+
+        int root = find(index);
+        return (touchesOf(root) & TOUCHES_TOP) != 0;
+    }
+
+    /**------------------------------------------------------------
+     * Returns number of sites in the open cluster containing site 
+     * (row i, column j), 0 if the site is blocked
+     *------------------------------------------------------------*/
+    public int clusterSize(int i, int j) {
+        checkBounds(i, j);
+
+        int rowIndex = convertToArrayIndex(i);
+        int columnIndex = convertToArrayIndex(j);
+        int index = convert2DTo1DArrayIndex(rowIndex, columnIndex);
+        if (!isOpen(index)) {
+            return 0;
+        }
+
+        return sizeOf(find(index));
+    }
+
+    /**------------------------------------------------------------
+     * Returns number of open clusters
+     *------------------------------------------------------------*/
+    public int clusterCount() {
+        return clusterCount;
+    }
+
+    /**------------------------------------------------------------
+     * Returns number of sites in the largest open cluster
+     *------------------------------------------------------------*/
+    public int largestClusterSize() {
+        return largestClusterSize;
+    }
+
+    /**------------------------------------------------------------
+     * Returns histogram of cluster sizes: element s is number of
+     * open clusters with s sites. Built on demand by visiting
+     * every root, so it is O(N^2)
+     *------------------------------------------------------------*/
+    public int[] clusterSizeHistogram() {
+        int[] histogram = new int[largestClusterSize + 1];
+        for (int word = 0; word < wordCount(n); word++) {
+            long bits = word(word);
+            while (bits != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (parentOf(index) == index) {
+                    histogram[sizeOf(index)]++;
+                }
+            }
+        }
+        return histogram;
     }
-    
+
     /**------------------------------------------------------------
      * Returns true if the system percolates
      *------------------------------------------------------------*/
-    public boolean percolates() {    
-        return topBottomSystem.connected(getTopSiteArrayIndex(), 
-                                getBottomSiteArrayIndex());
+    public boolean percolates() {
+        return percolates;
     }
-    
+
+    /**------------------------------------------------------------
+     * Returns true if site with 1D index is open
+     *------------------------------------------------------------*/
+    private boolean isOpen(int index) {
+        return (word(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**------------------------------------------------------------
+     * Accessors of the open sites bitset and union-find arrays,
+     * which are either on the heap or mapped from a snapshot
+     *------------------------------------------------------------*/
+    private long word(int word) {
+        return openedSpots != null ? openedSpots[word] : mappedOpenedSpots.get(word);
+    }
+
+    private void setWord(int word, long bits) {
+        if (openedSpots != null) {
+            openedSpots[word] = bits;
+        } else {
+            mappedOpenedSpots.set(word, bits);
+        }
+    }
+
+    private int parentOf(int p) {
+        return parent != null ? parent[p] : mappedParent.get(p);
+    }
+
+    private void setParent(int p, int root) {
+        if (parent != null) {
+            parent[p] = root;
+        } else {
+            mappedParent.set(p, root);
+        }
+    }
+
+    private int sizeOf(int root) {
+        return size != null ? size[root] : mappedSize.get(root);
+    }
+
+    private void setSize(int root, int sites) {
+        if (size != null) {
+            size[root] = sites;
+        } else {
+            mappedSize.set(root, sites);
+        }
+    }
+
+    private byte touchesOf(int root) {
+        return touches != null ? touches[root] : mappedTouches.get(root);
+    }
+
+    private void setTouches(int root, byte flags) {
+        if (touches != null) {
+            touches[root] = flags;
+        } else {
+            mappedTouches.set(root, flags);
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Returns number of words of the open sites bitset
+     *------------------------------------------------------------*/
+    private static int wordCount(int n) {
+        return (int) (((long) n * n + 63) >>> 6);
+    }
+
+    /**------------------------------------------------------------
+     * Returns root of the component containing site p, halving
+     * the path on the way up
+     *------------------------------------------------------------*/
+    private int find(int p) {
+        int pathLength = 0;
+        int next = parentOf(p);
+        while (p != next) {
+            int grandparent = parentOf(next);
+            setParent(p, grandparent);
+            p = grandparent;
+            next = parentOf(p);
+            pathLength++;
+        }
+        if (PercolationMetrics.isEnabled()) {
+            PercolationMetrics.recordFind(pathLength);
+        }
+        return p;
+    }
+
+    /**------------------------------------------------------------
+     * Merges components of sites p and q, smaller under larger,
+     * and merges their top/bottom flags into the new root
+     *------------------------------------------------------------*/
+    private void union(int p, int q) {
+        if (PercolationMetrics.isEnabled()) {
+            PercolationMetrics.recordUnion();
+        }
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            return;
+        }
+
+        int sizeP = sizeOf(rootP);
+        int sizeQ = sizeOf(rootQ);
+        if (sizeP < sizeQ) {
+            int tmp = rootP;
+            rootP = rootQ;
+            rootQ = tmp;
+        }
+
+        setParent(rootQ, rootP);
+        setSize(rootP, sizeP + sizeQ);
+        byte flags = (byte) (touchesOf(rootP) | touchesOf(rootQ));
+        setTouches(rootP, flags);
+        clusterCount--;
+        largestClusterSize = Math.max(largestClusterSize, sizeP + sizeQ);
+
+        if (flags == TOUCHES_BOTH) {
+            percolates = true;
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Writes complete state into snapshot file, replacing it if
+     * it exists. Arrays are copied through memory-mapped regions.
+     * Data goes to a temporary file which is then moved over the
+     * old one, so a crash never leaves a half written snapshot and
+     * an object restored with restoreMapped may save over its own
+     * snapshot
+     *------------------------------------------------------------*/
+    public void snapshot(String filename) throws IOException {
+        Path target = Paths.get(filename);
+        Path temporary = Paths.get(filename + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE);
+            header.order(MappedArrays.ORDER);
+            header.putInt(SNAPSHOT_MAGIC);
+            header.putInt(SNAPSHOT_VERSION);
+            header.putInt(n);
+            header.putInt(openCount);
+            header.putInt(clusterCount);
+            header.putInt(largestClusterSize);
+            header.putInt(percolates ? 1 : 0);
+            header.putInt(0);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+
+            long position = SNAPSHOT_HEADER_SIZE;
+            if (openedSpots != null) {
+                position = MappedArrays.write(channel, position, openedSpots);
+                position = MappedArrays.write(channel, position, parent);
+                position = MappedArrays.write(channel, position, size);
+                MappedArrays.write(channel, position, touches);
+            } else {
+                position = mappedOpenedSpots.writeTo(channel, position);
+                position = mappedParent.writeTo(channel, position);
+                position = mappedSize.writeTo(channel, position);
+                mappedTouches.writeTo(channel, position);
+            }
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**------------------------------------------------------------
+     * Creates percolation object from snapshot file written by
+     * snapshot, copying its arrays onto the heap
+     *------------------------------------------------------------*/
+    public static Percolation restore(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                                                    StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel);
+            Percolation percolation = new Percolation(header.getInt(8));
+            percolation.restoreCounters(header);
+
+            long position = SNAPSHOT_HEADER_SIZE;
+            position = MappedArrays.read(channel, position, percolation.openedSpots);
+            position = MappedArrays.read(channel, position, percolation.parent);
+            position = MappedArrays.read(channel, position, percolation.size);
+            MappedArrays.read(channel, position, percolation.touches);
+            return percolation;
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Creates percolation object working directly on a private
+     * mapping of snapshot file written by snapshot. Nothing is
+     * copied onto the heap: pages are read from the file when
+     * first touched and copied, off the heap, only when changed.
+     * The file itself is never modified, save new state with
+     * snapshot
+     *------------------------------------------------------------*/
+    public static Percolation restoreMapped(String filename) throws IOException {
+        //Private mappings need a channel open for writing too
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = readHeader(channel);
+            Percolation percolation = new Percolation(header.getInt(8), channel);
+            percolation.restoreCounters(header);
+            return percolation;
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Reads and validates snapshot header, including that n fits
+     * and the file has exactly the size n implies, so nothing is
+     * allocated for a corrupt file. Returns header positioned
+     * after n
+     *------------------------------------------------------------*/
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE);
+        header.order(MappedArrays.ORDER);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IllegalArgumentException("Not a percolation snapshot\n");
+            }
+        }
+        header.flip();
+
+        if (header.getInt() != SNAPSHOT_MAGIC) {
+            throw new IllegalArgumentException("Not a percolation snapshot\n");
+        }
+        if (header.getInt() != SNAPSHOT_VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version\n");
+        }
+
+        int n = header.getInt();
+        long sites = (long) n * n;
+        if (n <= 0 || sites > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid grid size in snapshot\n");
+        }
+        long expectedSize = SNAPSHOT_HEADER_SIZE + 8L * wordCount(n) + 9L * sites;
+        if (channel.size() != expectedSize) {
+            throw new IllegalArgumentException("Truncated percolation snapshot\n");
+        }
+        return header;
+    }
+
+    /**------------------------------------------------------------
+     * Sets counters from header returned by readHeader
+     *------------------------------------------------------------*/
+    private void restoreCounters(ByteBuffer header) {
+        openCount = header.getInt();
+        clusterCount = header.getInt();
+        largestClusterSize = header.getInt();
+        percolates = header.getInt() != 0;
+    }
+
     /**------------------------------------------------------------
      * Converts assigment (1 based) indexing to 0 based Java array
      * indexing
@@ -140,7 +615,7 @@ public class Percolation {
     private int convertToArrayIndex(int index) {
         return index - 1;
     }
-    
+
     /**------------------------------------------------------------
      * Checks if input parameters are within system defined bounds
      * and throws IndexOutOfBoundsException if they are not
@@ -149,31 +624,17 @@ public class Percolation {
         if (i < 1 || i > this.n) {
             throw new IndexOutOfBoundsException("Row index i out of bounds\n");
         }
-        
+
         if (j < 1 || j > this.n) {
             throw new IndexOutOfBoundsException("Column index j out of bounds\n");
         }
     }
-    
+
     /**------------------------------------------------------------
-     * Converts percolation model 2D indexing to 1D indexing 
-     * used by WeightedQuickUnionUF class
+     * Converts percolation model 2D indexing to 1D indexing
+     * used by the union-find arrays
      *------------------------------------------------------------*/
     private int convert2DTo1DArrayIndex(int i, int j) {
         return i * n + j;
     }
-    
-    /**------------------------------------------------------------
-     * Returns index designated for top virtual site
-     *------------------------------------------------------------*/
-    private int getTopSiteArrayIndex() {
-        return n * n + TOP_SITE_OFFSET;
-    }
-    
-    /**------------------------------------------------------------
-     * Returns index designated for bottom virtual site
-     *------------------------------------------------------------*/
-    private int getBottomSiteArrayIndex() {
-        return n * n + BOTTOM_SITE_OFFSET;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+/**------------------------------------------------------------
+ * Compilation:    javac PercolationBenchmark.java
+ * Execution:      java PercolationBenchmark [-o results.json] [GridSize ...]
+ *
+ * Micro benchmarks of Percolation and PercolationStats hot
+ * paths, for every grid size given (64, 256 and 1024 by
+ * default):
+ *
+ *   open        - opening all N*N sites in random order, ns/op
+ *   isFull      - isFull of random site at p = 0.6, ns/op
+ *   percolates  - percolates at p = 0.6 and of blocked grid, ns/op
+ *   trial       - one PercolationStats trial, ms/op
+ *
+ * Every benchmark runs warmup iterations first and then
+ * measured ones. Results are printed as a table and written as
+ * a JSON array (benchmark, n, unit, score, error, iterations),
+ * where score is the mean and error the 99.9% confidence
+ * half-width over measured iterations, so runs of different
+ * commits can be compared by a script.
+ *
+ *------------------------------------------------------------*/
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+public class PercolationBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 10;
+    private static final int MEASURED_ITERATIONS = 10;
+    private static final int QUERIES_PER_ITERATION = 1 << 20;
+    private static final int TRIALS_PER_ITERATION = 10;
+    private static final double OPEN_FRACTION = 0.6d;
+    private static final double CONFIDENCE_999 = 3.29d;
+    private static final long SEED = 20140204L;
+
+    //Keeps results of measured calls alive so they are not optimized away
+    private static long sink = 0;
+
+    private final List<String> results = new ArrayList<String>();
+
+    /**------------------------------------------------------------
+     * Measures time of one iteration of a benchmark, in units of
+     * its result
+     *------------------------------------------------------------*/
+    private interface Iteration {
+        double run();
+    }
+
+    /**------------------------------------------------------------
+     * Runs warmup and measured iterations and records result
+     *------------------------------------------------------------*/
+    private void measure(String benchmark, int n, String unit, Iteration iteration) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration.run();
+        }
+
+        StreamingStats stats = new StreamingStats();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            stats.add(iteration.run());
+        }
+
+        double score = stats.mean();
+        double error = CONFIDENCE_999 * stats.stddev() / Math.sqrt(stats.count());
+        StdOut.printf("%-12s %6d %12.3f +- %-10.3f %s\n",
+                      benchmark, n, score, error, unit);
+        results.add(String.format(Locale.ROOT,
+            "  {\"benchmark\": \"%s\", \"n\": %d, \"unit\": \"%s\", "
+            + "\"score\": %.6f, \"error\": %.6f, \"iterations\": %d}",
+            benchmark, n, unit, score, error, stats.count()));
+    }
+
+    /**------------------------------------------------------------
+     * Runs all benchmarks for grid size n
+     *------------------------------------------------------------*/
+    private void benchmark(final int n) {
+        final int sites = n * n;
+        final SplittableRandom random = new SplittableRandom(SEED);
+        final RandomSiteOrder order = new RandomSiteOrder(sites);
+        final int[] openOrder = new int[sites];
+        for (int k = 0; k < sites; k++) {
+            openOrder[k] = order.next(random);
+        }
+
+        final Percolation percolation = new Percolation(n);
+        measure("open", n, "ns/op", new Iteration() {
+            public double run() {
+                percolation.reset();
+                long start = System.nanoTime();
+                for (int k = 0; k < sites; k++) {
+                    percolation.open(openOrder[k] / n + 1, openOrder[k] % n + 1);
+                }
+                long elapsed = System.nanoTime() - start;
+                sink += percolation.openCount();
+                return (double) elapsed / sites;
+            }
+        });
+
+        percolation.reset();
+        for (int k = 0; k < (int) (OPEN_FRACTION * sites); k++) {
+            percolation.open(openOrder[k] / n + 1, openOrder[k] % n + 1);
+        }
+        final int[] queries = new int[QUERIES_PER_ITERATION];
+        for (int k = 0; k < queries.length; k++) {
+            queries[k] = random.nextInt(sites);
+        }
+
+        measure("isFull", n, "ns/op", new Iteration() {
+            public double run() {
+                int full = 0;
+                long start = System.nanoTime();
+                for (int k = 0; k < queries.length; k++) {
+                    if (percolation.isFull(queries[k] / n + 1, queries[k] % n + 1)) {
+                        full++;
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                sink += full;
+                return (double) elapsed / queries.length;
+            }
+        });
+
+        //Queries alternate between two objects, otherwise the JIT
+        //reads percolates only once for the whole loop
+        final Percolation blocked = new Percolation(n);
+        final Percolation[] grids = { percolation, blocked };
+        measure("percolates", n, "ns/op", new Iteration() {
+            public double run() {
+                int percolating = 0;
+                long start = System.nanoTime();
+                for (int k = 0; k < QUERIES_PER_ITERATION; k++) {
+                    if (grids[queries[k] & 1].percolates()) {
+                        percolating++;
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                sink += percolating;
+                return (double) elapsed / QUERIES_PER_ITERATION;
+            }
+        });
+
+        measure("trial", n, "ms/op", new Iteration() {
+            public double run() {
+                long start = System.nanoTime();
+                PercolationStats stats =
+                    new PercolationStats(n, TRIALS_PER_ITERATION, random.nextLong(), 1);
+                long elapsed = System.nanoTime() - start;
+                sink += (long) stats.mean();
+                return elapsed / 1e6 / TRIALS_PER_ITERATION;
+            }
+        });
+    }
+
+    /**------------------------------------------------------------
+     * Writes recorded results as JSON array
+     *------------------------------------------------------------*/
+    private void writeJson(PrintStream out) {
+        out.println("[");
+        for (int i = 0; i < results.size(); i++) {
+            out.print(results.get(i));
+            out.println(i < results.size() - 1 ? "," : "");
+        }
+        out.println("]");
+    }
+
+    /**------------------------------------------------------------
+     * Runs benchmarks for given grid sizes
+     *------------------------------------------------------------*/
+    public static void main(String[] args) throws FileNotFoundException {
+        String output = null;
+        List<Integer> sizes = new ArrayList<Integer>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-o".equals(args[i]) && i + 1 < args.length) {
+                output = args[++i];
+            } else {
+                sizes.add(Integer.parseInt(args[i]));
+            }
+        }
+        if (sizes.isEmpty()) {
+            sizes.add(64);
+            sizes.add(256);
+            sizes.add(1024);
+        }
+
+        PercolationBenchmark benchmark = new PercolationBenchmark();
+        StdOut.printf("%-12s %6s %26s\n", "benchmark", "n", "score");
+        for (int n : sizes) {
+            benchmark.benchmark(n);
+        }
+
+        if (output == null) {
+            benchmark.writeJson(System.out);
+        } else {
+            PrintStream out = new PrintStream(output);
+            try {
+                benchmark.writeJson(out);
+            } finally {
+                out.close();
+            }
+        }
+
+        if (sink == 42) {
+            StdOut.println();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/**------------------------------------------------------------
+ * Compilation:    javac PercolationMetrics.java
+ *
+ * Optional counters of Percolation union-find work and
+ * PercolationStats trial time. Disabled by default, when
+ * disabled instrumented code only reads one flag. Counters are
+ * striped LongAdders, so threads running trials in parallel do
+ * not contend on them.
+ *
+ * Can be switched on with enable() or by running with
+ * -Dpercolation.metrics=true.
+ *
+ *------------------------------------------------------------*/
+import java.util.concurrent.atomic.LongAdder;
+
+public class PercolationMetrics {
+
+    private static volatile boolean enabled =
+        Boolean.getBoolean("percolation.metrics");
+
+    private static final LongAdder OPENS = new LongAdder();
+    private static final LongAdder UNIONS = new LongAdder();
+    private static final LongAdder FINDS = new LongAdder();
+    private static final LongAdder FIND_PATH_LENGTH = new LongAdder();
+    private static final LongAdder TRIALS = new LongAdder();
+    private static final LongAdder TRIAL_NANOS = new LongAdder();
+
+    private PercolationMetrics() {
+    }
+
+    /**------------------------------------------------------------
+     * Starts collecting metrics
+     *------------------------------------------------------------*/
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**------------------------------------------------------------
+     * Stops collecting metrics, collected values are kept
+     *------------------------------------------------------------*/
+    public static void disable() {
+        enabled = false;
+    }
+
+    /**------------------------------------------------------------
+     * Returns true if metrics are being collected
+     *------------------------------------------------------------*/
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**------------------------------------------------------------
+     * Sets all counters to zero
+     *------------------------------------------------------------*/
+    public static void reset() {
+        OPENS.reset();
+        UNIONS.reset();
+        FINDS.reset();
+        FIND_PATH_LENGTH.reset();
+        TRIALS.reset();
+        TRIAL_NANOS.reset();
+    }
+
+    /**------------------------------------------------------------
+     * Records count calls to open
+     *------------------------------------------------------------*/
+    public static void recordOpens(int count) {
+        OPENS.add(count);
+    }
+
+    /**------------------------------------------------------------
+     * Records one call to union
+     *------------------------------------------------------------*/
+    public static void recordUnion() {
+        UNIONS.increment();
+    }
+
+    /**------------------------------------------------------------
+     * Records one call to find which followed pathLength links
+     *------------------------------------------------------------*/
+    public static void recordFind(int pathLength) {
+        FINDS.increment();
+        FIND_PATH_LENGTH.add(pathLength);
+    }
+
+    /**------------------------------------------------------------
+     * Records one trial which took given time
+     *------------------------------------------------------------*/
+    public static void recordTrial(long nanos) {
+        TRIALS.increment();
+        TRIAL_NANOS.add(nanos);
+    }
+
+    /**------------------------------------------------------------
+     * Number of sites passed to open or openAll
+     *------------------------------------------------------------*/
+    public static long opens() {
+        return OPENS.sum();
+    }
+
+    /**------------------------------------------------------------
+     * Number of union calls
+     *------------------------------------------------------------*/
+    public static long unions() {
+        return UNIONS.sum();
+    }
+
+    /**------------------------------------------------------------
+     * Number of find calls
+     *------------------------------------------------------------*/
+    public static long finds() {
+        return FINDS.sum();
+    }
+
+    /**------------------------------------------------------------
+     * Number of timed trials
+     *------------------------------------------------------------*/
+    public static long trials() {
+        return TRIALS.sum();
+    }
+
+    /**------------------------------------------------------------
+     * Average number of parent links followed per find
+     *------------------------------------------------------------*/
+    public static double averageFindPathLength() {
+        return ratio(FIND_PATH_LENGTH.sum(), FINDS.sum());
+    }
+
+    /**------------------------------------------------------------
+     * Average time of one trial in milliseconds
+     *------------------------------------------------------------*/
+    public static double averageTrialMillis() {
+        return ratio(TRIAL_NANOS.sum(), TRIALS.sum()) / 1e6;
+    }
+
+    /**------------------------------------------------------------
+     * Returns all metrics as printable text
+     *------------------------------------------------------------*/
+    public static String report() {
+        long opens = opens();
+        return String.format(
+            "opens                   = %d\n"
+            + "unions per open         = %.3f\n"
+            + "finds per open          = %.3f\n"
+            + "average find path       = %.3f\n"
+            + "trials                  = %d\n"
+            + "average trial time      = %.3f ms\n",
+            opens, ratio(unions(), opens), ratio(finds(), opens),
+            averageFindPathLength(), trials(), averageTrialMillis());
+    }
+
+    /**------------------------------------------------------------
+     * Returns numerator / denominator, 0 if there is nothing to
+     * divide by
+     *------------------------------------------------------------*/
+    private static double ratio(long numerator, long denominator) {
+        if (denominator == 0) {
+            return 0.0d;
+        }
+        return (double) numerator / denominator;
+    }
+}
@@ -0,0 +1,234 @@
+/**------------------------------------------------------------
+ * Compilation:    javac PercolationProbability.java
+ * Execution:      java PercolationProbability GridSize NoSamples
+ *                                   [Seed [Threads]]
+ *
+ * Estimates probability that N-by-N system percolates when
+ * every site is open with fixed probability p, for a batch of
+ * p values at once.
+ *
+ * Sites are not opened one by one. Every row is generated as
+ * a bitmap 64 sites at a time from random words, and rows are
+ * fed to HoshenKopelman which labels clusters in one pass with
+ * O(N) memory. A trial stops early once no cluster of the last
+ * row reaches the top. Trials of all p values are spread over
+ * the given number of threads, and results depend only on the
+ * seed, not on the thread count.
+ *
+ *------------------------------------------------------------*/
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class PercolationProbability {
+
+    //Site probability is rounded to this many binary digits
+    private static final int PRECISION_BITS = 24;
+    private static final int PRECISION_SCALE = 1 << PRECISION_BITS;
+
+    //Parallel runs split trials into about threads * this many tasks
+    private static final int TASKS_PER_THREAD = 8;
+
+    private int n;
+    private int t;
+    private double[] p;
+    private double[] probability;
+
+    //Seed and outcome of every trial, p major
+    private long[] seeds;
+    private boolean[] percolated;
+
+    /**------------------------------------------------------------
+     * Performs T trials on an N-by-N grid for every probability
+     * in p
+     *------------------------------------------------------------*/
+    public PercolationProbability(int N, double[] p, int T, long seed,
+                                  int threads) {
+        if (N <= 0 || T <= 0 || threads <= 0) {
+            throw new IllegalArgumentException();
+        }
+        for (double value : p) {
+            if (!(value >= 0.0d && value <= 1.0d)) {
+                throw new IllegalArgumentException("p must be in [0, 1]\n");
+            }
+        }
+
+        this.n = N;
+        this.t = T;
+        this.p = p.clone();
+
+        int trials = p.length * t;
+        this.seeds = new long[trials];
+        this.percolated = new boolean[trials];
+        SplittableRandom master = new SplittableRandom(seed);
+        for (int k = 0; k < trials; k++) {
+            seeds[k] = master.nextLong();
+        }
+
+        if (threads == 1) {
+            runTrials(0, trials);
+        } else {
+            int trialsPerTask = Math.max(1, trials / (threads * TASKS_PER_THREAD));
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.invoke(new TrialTask(0, trials, trialsPerTask));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        this.probability = new double[p.length];
+        for (int k = 0; k < trials; k++) {
+            if (percolated[k]) {
+                probability[k / t]++;
+            }
+        }
+        for (int i = 0; i < p.length; i++) {
+            probability[i] /= t;
+        }
+        this.seeds = null;
+        this.percolated = null;
+    }
+
+    /**------------------------------------------------------------
+     * Runs trials [lo, hi)
+     *------------------------------------------------------------*/
+    private void runTrials(int lo, int hi) {
+        long[] row = new long[(n + 63) >>> 6];
+        for (int k = lo; k < hi; k++) {
+            percolated[k] = performTrial(p[k / t], new SplittableRandom(seeds[k]), row);
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Generates random grid row by row and returns true if it
+     * percolates
+     *------------------------------------------------------------*/
+    private boolean performTrial(double siteProbability, SplittableRandom random,
+                                 long[] row) {
+        long threshold = Math.round(siteProbability * PRECISION_SCALE);
+        HoshenKopelman grid = new HoshenKopelman(n);
+        for (int i = 0; i < n; i++) {
+            for (int word = 0; word < row.length; word++) {
+                row[word] = randomBits(threshold, random);
+            }
+            grid.addRow(row);
+            if (!grid.canPercolate()) {
+                return false;
+            }
+        }
+        return grid.percolates();
+    }
+
+    /**------------------------------------------------------------
+     * Returns 64 independent random bits, each set with
+     * probability threshold / 2^PRECISION_BITS.
+     *
+     * Binary digits of the threshold are consumed from the least
+     * significant one: digit 1 ORs next random word in, digit 0
+     * ANDs it in. After k digits every bit is set with probability
+     * equal to the value of those digits as a binary fraction.
+     * Trailing zero digits are skipped, they would AND into zero
+     *------------------------------------------------------------*/
+    private static long randomBits(long threshold, SplittableRandom random) {
+        if (threshold <= 0) {
+            return 0L;
+        }
+        if (threshold >= PRECISION_SCALE) {
+            return -1L;
+        }
+
+        long bits = 0L;
+        for (int digit = Long.numberOfTrailingZeros(threshold);
+             digit < PRECISION_BITS; digit++) {
+            if ((threshold & (1L << digit)) != 0) {
+                bits |= random.nextLong();
+            } else {
+                bits &= random.nextLong();
+            }
+        }
+        return bits;
+    }
+
+    /**------------------------------------------------------------
+     * Runs trials [lo, hi), splitting the range until it is small
+     * enough
+     *------------------------------------------------------------*/
+    private class TrialTask extends RecursiveAction {
+
+        private final int lo;
+        private final int hi;
+        private final int trialsPerTask;
+
+        private TrialTask(int lo, int hi, int trialsPerTask) {
+            this.lo = lo;
+            this.hi = hi;
+            this.trialsPerTask = trialsPerTask;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= trialsPerTask) {
+                runTrials(lo, hi);
+                return;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new TrialTask(lo, mid, trialsPerTask),
+                      new TrialTask(mid, hi, trialsPerTask));
+        }
+    }
+
+    /**------------------------------------------------------------
+     * Number of probabilities in the batch
+     *------------------------------------------------------------*/
+    public int size() {
+        return p.length;
+    }
+
+    /**------------------------------------------------------------
+     * Site probability with index i
+     *------------------------------------------------------------*/
+    public double p(int i) {
+        return p[i];
+    }
+
+    /**------------------------------------------------------------
+     * Fraction of trials with site probability p(i) which
+     * percolated
+     *------------------------------------------------------------*/
+    public double probability(int i) {
+        return probability[i];
+    }
+
+    /**------------------------------------------------------------
+     * Prints percolation probability around the threshold
+     *------------------------------------------------------------*/
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException();
+        }
+
+        int n = Integer.parseInt(args[0]);
+        int t = Integer.parseInt(args[1]);
+        long seed = (long) (StdRandom.uniform() * Long.MAX_VALUE);
+        if (args.length > 2) {
+            seed = Long.parseLong(args[2]);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 3) {
+            threads = Integer.parseInt(args[3]);
+        }
+
+        double[] p = new double[21];
+        for (int i = 0; i < p.length; i++) {
+            p[i] = 0.50d + i / 100.0d;
+        }
+
+        PercolationProbability batch = new PercolationProbability(n, p, t, seed, threads);
+        StdOut.printf("%-8s %-12s\n", "p", "percolates");
+        for (int i = 0; i < batch.size(); i++) {
+            StdOut.printf("%-8.2f %-12.6f\n", batch.p(i), batch.probability(i));
+        }
+    }
+}
@@ -4,15 +4,37 @@
  * Written:        4.2.2014.
  *
  * Compilation:    javac PercolationStats.java
- * Execution:      java PercolationStats GridSize NoSamples
+ * Execution:      java PercolationStats GridSize NoSamples 
+ *                                   [Seed [Threads [HalfWidth]]]
  * 
  * Tests working of Percolation model and calculates mean 
  * percolation probability for which system percolates, 
  * standard deviation and confindence bounds.
  * 
+ * Every trial draws from its own random stream split off a
+ * single master seed, so for the same seed the results are
+ * identical no matter how many threads run the trials.
+ * 
+ * When HalfWidth is given, NoSamples is only an upper bound: 
+ * trials stop as soon as the 95% confidence interval is 
+ * narrower than mean +/- HalfWidth.
+ * 
+ * Run with -Dpercolation.metrics=true to print union-find and 
+ * trial time metrics at the end.
+ * 
  *------------------------------------------------------------*/
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 public class PercolationStats {
     
+    //Parallel runs split trials into about threads * this many tasks
+    private static final int TASKS_PER_THREAD = 8;
+    //Adaptive runs never stop before this many trials
+    private static final int MIN_ADAPTIVE_TRIALS = 30;
+    private static final double CONFIDENCE_95 = 1.96d;
+    
     private int n;
     private int t;
     private double[] samples;
@@ -27,8 +49,17 @@ public class PercolationStats {
      * experiments on an N-by-N grid
      *------------------------------------------------------------*/
     public PercolationStats(int N, int T) { 
+        this(N, T, randomSeed(), 1);
+    }
+    
+    /**------------------------------------------------------------
+     * Performs T independent computational experiments on an 
+     * N-by-N grid, spread over the given number of threads. 
+     * Results depend only on the seed, not on the thread count
+     *------------------------------------------------------------*/
+    public PercolationStats(int N, int T, long seed, int threads) {
         
-        if (N <= 0 || T <= 0) {
+        if (N <= 0 || T <= 0 || threads <= 0) {
             throw new IllegalArgumentException();
         }
         
@@ -36,13 +67,124 @@ public class PercolationStats {
         this.t = T;
         this.samples = new double[T];
         
-        for (int i = 0; i < t; i++) {
-            samples[i] = performMeasurment();
+        SplittableRandom[] streams = new SplittableRandom[T];
+        splitStreams(new SplittableRandom(seed), streams, T);
+        
+        ForkJoinPool pool = createPool(threads);
+        try {
+            runTrials(pool, streams, t, threads);
+        } finally {
+            shutdown(pool);
         }
         
         calculateStatistics();
     }
     
+    /**------------------------------------------------------------
+     * Performs experiments on an N-by-N grid until the 95% 
+     * confidence interval half-width drops to halfWidth or 
+     * maxTrials experiments are done. Only the running mean and 
+     * variance are kept, so memory does not grow with trials. 
+     * Results depend only on the seed, not on the thread count
+     *------------------------------------------------------------*/
+    public PercolationStats(int N, double halfWidth, int maxTrials, 
+                            long seed, int threads) {
+        
+        if (N <= 0 || maxTrials <= 0 || threads <= 0 
+                || !(halfWidth > 0.0d)) {
+            throw new IllegalArgumentException();
+        }
+        
+        this.n = N;
+        
+        //Trials run in batches of one per thread and are folded in 
+        //trial order, the rest of the batch is dropped on stopping
+        this.samples = new double[threads];
+        SplittableRandom master = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[threads];
+        StreamingStats stats = new StreamingStats();
+        
+        //Every batch slot keeps its own percolation object and 
+        //opening order for all batches
+        Percolation[] grids = new Percolation[threads];
+        RandomSiteOrder[] orders = new RandomSiteOrder[threads];
+        for (int i = 0; i < threads; i++) {
+            grids[i] = new Percolation(n);
+            orders[i] = new RandomSiteOrder(n * n);
+        }
+        
+        ForkJoinPool pool = createPool(threads);
+        try {
+            boolean done = false;
+            while (!done) {
+                int batch = Math.min(threads, maxTrials - stats.count());
+                splitStreams(master, streams, batch);
+                if (pool == null) {
+                    runTrials(streams, 0, batch, grids[0], orders[0]);
+                } else {
+                    pool.invoke(new TrialTask(streams, 0, batch, 1, 
+                                              grids, orders));
+                }
+                
+                for (int i = 0; i < batch && !done; i++) {
+                    stats.add(samples[i]);
+                    done = stats.count() == maxTrials 
+                        || (stats.count() >= MIN_ADAPTIVE_TRIALS 
+                            && confidenceOffset(stats.stddev(), stats.count()) 
+                               <= halfWidth);
+                }
+            }
+        } finally {
+            shutdown(pool);
+        }
+        
+        this.samples = null;
+        this.t = stats.count();
+        mean = stats.mean();
+        stddev = stats.stddev();
+        calculateConfidence();
+    }
+    
+    /**------------------------------------------------------------
+     * Splits random streams for the next count trials off the 
+     * master stream. Splitting is done in trial order so trial i 
+     * always gets the same stream
+     *------------------------------------------------------------*/
+    private static void splitStreams(SplittableRandom master, 
+                                     SplittableRandom[] streams, 
+                                     int count) {
+        for (int i = 0; i < count; i++) {
+            streams[i] = master.split();
+        }
+    }
+    
+    /**------------------------------------------------------------
+     * Creates pool for parallel runs, null for sequential ones
+     *------------------------------------------------------------*/
+    private static ForkJoinPool createPool(int threads) {
+        if (threads == 1) {
+            return null;
+        }
+        return new ForkJoinPool(threads);
+    }
+    
+    /**------------------------------------------------------------
+     * Shuts down pool created by createPool
+     *------------------------------------------------------------*/
+    private static void shutdown(ForkJoinPool pool) {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+    
+    /**------------------------------------------------------------
+     * Draws master seed from StdRandom, so StdRandom.setSeed 
+     * still makes sequential runs reproducible
+     *------------------------------------------------------------*/
+    private static long randomSeed() {
+        return (long) (StdRandom.uniform() * Long.MAX_VALUE);
+    }
+    
     /**------------------------------------------------------------
      * Uses StdStats class to calculate mean, stddev, 
      * confidenceLo and confidenceHi values
@@ -50,31 +192,138 @@ public class PercolationStats {
     private void calculateStatistics() {
         mean = StdStats.mean(samples);
         stddev = StdStats.stddev(samples);
-        
-        double confidenceOffset = (1.96d * stddev) / Math.sqrt(t);
+        calculateConfidence();
+    }
+    
+    /**------------------------------------------------------------
+     * Calculates confidenceLo and confidenceHi from mean, stddev 
+     * and number of trials
+     *------------------------------------------------------------*/
+    private void calculateConfidence() {
+        double confidenceOffset = confidenceOffset(stddev, t);
         confidenceLo = mean - confidenceOffset;
         confidenceHi = mean + confidenceOffset;
     }
     
     /**------------------------------------------------------------
-     * Crates percolation object and estimates probabilty p via 
-     * Monte Carlo method
+     * Returns half-width of the 95% confidence interval
+     *------------------------------------------------------------*/
+    private static double confidenceOffset(double stddev, int trials) {
+        return (CONFIDENCE_95 * stddev) / Math.sqrt(trials);
+    }
+    
+    /**------------------------------------------------------------
+     * Runs first count trials into samples, on the pool if there 
+     * is one
+     *------------------------------------------------------------*/
+    private void runTrials(ForkJoinPool pool, SplittableRandom[] streams, 
+                           int count, int threads) {
+        if (pool == null) {
+            runTrials(streams, 0, count);
+        } else {
+            int trialsPerTask = Math.max(1, count / (threads * TASKS_PER_THREAD));
+            pool.invoke(new TrialTask(streams, 0, count, trialsPerTask, 
+                                      null, null));
+        }
+    }
+    
+    /**------------------------------------------------------------
+     * Runs trials [lo, hi) into samples, reusing one percolation 
+     * object and one opening order for all of them
      *------------------------------------------------------------*/
-    private double performMeasurment() {
-        Percolation percolation = new Percolation(n);
+    private void runTrials(SplittableRandom[] streams, int lo, int hi) {
+        runTrials(streams, lo, hi, new Percolation(n), 
+                  new RandomSiteOrder(n * n));
+    }
+    
+    /**------------------------------------------------------------
+     * Runs trials [lo, hi) into samples on the given percolation 
+     * object and opening order
+     *------------------------------------------------------------*/
+    private void runTrials(SplittableRandom[] streams, int lo, int hi, 
+                           Percolation percolation, 
+                           RandomSiteOrder order) {
+        for (int i = lo; i < hi; i++) {
+            percolation.reset();
+            order.reset();
+            long start = System.nanoTime();
+            samples[i] = performMeasurment(percolation, order, streams[i]);
+            if (PercolationMetrics.isEnabled()) {
+                PercolationMetrics.recordTrial(System.nanoTime() - start);
+            }
+        }
+    }
+    
+    /**------------------------------------------------------------
+     * Opens sites of blocked percolation object in random order 
+     * and estimates probabilty p via Monte Carlo method. Every 
+     * site is drawn once, so there are no rejected draws
+     *------------------------------------------------------------*/
+    private double performMeasurment(Percolation percolation, 
+                                     RandomSiteOrder order, 
+                                     SplittableRandom random) {
         int numberOfOpenedSpots = 0;
         while (!percolation.percolates()) {
-            int i = StdRandom.uniform(n) + 1;
-            int j = StdRandom.uniform(n) + 1;
-            
-            if (!percolation.isOpen(i, j)) {
-                percolation.open(i, j);
-                numberOfOpenedSpots++;
-            }
+            int site = order.next(random);
+            percolation.open(site / n + 1, site % n + 1);
+            numberOfOpenedSpots++;
         }
         return (double) numberOfOpenedSpots / (double) (n * n);
     }
     
+    /**------------------------------------------------------------
+     * Runs trials [lo, hi) and stores each one into its own slot 
+     * of samples, splitting the range until it is small enough. 
+     * With grids and orders given, a task starting at slot lo 
+     * reuses grids[lo] and orders[lo], otherwise it allocates 
+     * its own
+     *------------------------------------------------------------*/
+    private class TrialTask extends RecursiveAction {
+        
+        private final SplittableRandom[] streams;
+        private final int lo;
+        private final int hi;
+        private final int trialsPerTask;
+        private final Percolation[] grids;
+        private final RandomSiteOrder[] orders;
+        
+        private TrialTask(SplittableRandom[] streams, int lo, int hi, 
+                          int trialsPerTask, Percolation[] grids, 
+                          RandomSiteOrder[] orders) {
+            this.streams = streams;
+            this.lo = lo;
+            this.hi = hi;
+            this.trialsPerTask = trialsPerTask;
+            this.grids = grids;
+            this.orders = orders;
+        }
+        
+        @Override
+        protected void compute() {
+            if (hi - lo <= trialsPerTask) {
+                if (grids == null) {
+                    runTrials(streams, lo, hi);
+                } else {
+                    runTrials(streams, lo, hi, grids[lo], orders[lo]);
+                }
+                return;
+            }
+            
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new TrialTask(streams, lo, mid, trialsPerTask, 
+                                    grids, orders), 
+                      new TrialTask(streams, mid, hi, trialsPerTask, 
+                                    grids, orders));
+        }
+    }
+    
+    /**------------------------------------------------------------
+     * Number of experiments performed
+     *------------------------------------------------------------*/
+    public int trials() {
+        return t;
+    }
+    
     /**------------------------------------------------------------
      * Samples mean of percolation threshold
      *------------------------------------------------------------*/
@@ -113,11 +362,32 @@ public class PercolationStats {
         
         int n = Integer.parseInt(args[0]);
         int t = Integer.parseInt(args[1]);
-        PercolationStats stats = new PercolationStats(n, t); 
+        PercolationStats stats;
+        if (args.length < 3) {
+            stats = new PercolationStats(n, t);
+        } else {
+            long seed = Long.parseLong(args[2]);
+            int threads = Runtime.getRuntime().availableProcessors();
+            if (args.length > 3) {
+                threads = Integer.parseInt(args[3]);
+            }
+            if (args.length > 4) {
+                double halfWidth = Double.parseDouble(args[4]);
+                stats = new PercolationStats(n, halfWidth, t, seed, threads);
+            } else {
+                stats = new PercolationStats(n, t, seed, threads);
+            }
+        }
+        
+        StdOut.printf("trials                  = %d\n", stats.trials());
         
         StdOut.printf("mean                    = %g\n", stats.mean());
         StdOut.printf("stddev                  = %g\n", stats.stddev());
         StdOut.printf("95%% confidence interval = %g, %g\n", 
                       stats.confidenceLo(), stats.confidenceHi());
+        
+        if (PercolationMetrics.isEnabled()) {
+            StdOut.print(PercolationMetrics.report());
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+/**------------------------------------------------------------
+ * Compilation:    javac RandomSiteOrder.java
+ *
+ * Generates sites of a grid in uniformly random order, each
+ * site exactly once. Works as a lazily evaluated Fisher-Yates
+ * shuffle: every call to next does a single swap, so drawing
+ * k sites costs O(k) instead of shuffling all of them up front.
+ * reset rewrites the whole order in one sequential O(N) pass,
+ * which is cheap next to the random accesses of a trial.
+ *
+ *------------------------------------------------------------*/
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+public class RandomSiteOrder {
+
+    //Sites not yet drawn are kept in sites[0, remaining)
+    private int[] sites;
+    private int remaining;
+
+    /**------------------------------------------------------------
+     * Creates order over sites 0 .. siteCount - 1
+     *------------------------------------------------------------*/
+    public RandomSiteOrder(int siteCount) {
+        if (siteCount < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.sites = new int[siteCount];
+        reset();
+    }
+
+    /**------------------------------------------------------------
+     * Makes all sites available again. Sites are put back in
+     * natural order, so the sequence drawn depends only on the
+     * random stream and not on previous runs. Takes O(N) time
+     * however few sites were drawn
+     *------------------------------------------------------------*/
+    public void reset() {
+        for (int i = 0; i < sites.length; i++) {
+            sites[i] = i;
+        }
+        remaining = sites.length;
+    }
+
+    /**------------------------------------------------------------
+     * Returns true if there are sites left to draw
+     *------------------------------------------------------------*/
+    public boolean hasNext() {
+        return remaining > 0;
+    }
+
+    /**------------------------------------------------------------
+     * Returns next site (0 based, row-major) in random order
+     *------------------------------------------------------------*/
+    public int next(SplittableRandom random) {
+        if (remaining == 0) {
+            throw new NoSuchElementException();
+        }
+
+        int j = random.nextInt(remaining);
+        remaining--;
+
+        int site = sites[j];
+        sites[j] = sites[remaining];
+        sites[remaining] = site;
+        return site;
+    }
+}
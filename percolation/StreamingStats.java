@@ -0,0 +1,60 @@
+/**------------------------------------------------------------
+ * Compilation:    javac StreamingStats.java
+ *
+ * Keeps running mean and variance of a stream of samples
+ * using Welford's online algorithm. Memory does not depend on
+ * the number of samples.
+ *
+ *------------------------------------------------------------*/
+public class StreamingStats {
+
+    private int count = 0;
+    private double mean = 0.0d;
+    //Sum of squared differences from the current mean
+    private double m2 = 0.0d;
+
+    /**------------------------------------------------------------
+     * Adds sample x
+     *------------------------------------------------------------*/
+    public void add(double x) {
+        count++;
+        double delta = x - mean;
+        mean += delta / count;
+        m2 += delta * (x - mean);
+    }
+
+    /**------------------------------------------------------------
+     * Returns number of samples added so far
+     *------------------------------------------------------------*/
+    public int count() {
+        return count;
+    }
+
+    /**------------------------------------------------------------
+     * Returns sample mean, NaN if there are no samples
+     *------------------------------------------------------------*/
+    public double mean() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        return mean;
+    }
+
+    /**------------------------------------------------------------
+     * Returns sample variance, NaN if there are less than two
+     * samples
+     *------------------------------------------------------------*/
+    public double variance() {
+        if (count < 2) {
+            return Double.NaN;
+        }
+        return m2 / (count - 1);
+    }
+
+    /**------------------------------------------------------------
+     * Returns sample standard deviation
+     *------------------------------------------------------------*/
+    public double stddev() {
+        return Math.sqrt(variance());
+    }
+}
@@ -0,0 +1,260 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Randomized queue shared by many producer and consumer threads. Items are
+ * split across stripes, about one per core, each a resizing array with its
+ * own lock. A thread always enqueues to the stripe it was assigned, so
+ * producers on different cores do not contend.
+ *
+ * dequeue picks a stripe with probability proportional to its size and
+ * then a uniform item within it, which is a uniform choice over all items
+ * as long as stripe sizes do not change in between. If the stripe is
+ * empty by the time its lock is taken, the draw is retried a few times and
+ * then every stripe is scanned. dequeue and sample return null when the
+ * queue is empty.
+ */
+public class ConcurrentRandomizedQueue<Item> {
+
+    private static final int DRAW_ATTEMPTS = 4;
+
+    private final Stripe<Item>[] stripes;
+    // hands out stripes to threads round robin
+    private final AtomicInteger nextStripe = new AtomicInteger();
+    private final ThreadLocal<Stripe<Item>> localStripe = new ThreadLocal<Stripe<Item>>() {
+        @Override
+        protected Stripe<Item> initialValue() {
+            return stripes[(nextStripe.getAndIncrement() & Integer.MAX_VALUE)
+                    % stripes.length];
+        }
+    };
+
+    private static class Stripe<Item> {
+
+        private Item[] items = (Item[]) new Object[1];
+        // written under the lock, read without it for stripe selection
+        private volatile int size = 0;
+
+        private synchronized void add(Item item) {
+            if (size == items.length) {
+                resize(items.length * 2);
+            }
+            items[size] = item;
+            size++;
+        }
+
+        // remove a uniform random item, null if empty
+        private synchronized Item remove(ThreadLocalRandom random) {
+            if (size == 0) {
+                return null;
+            }
+
+            int position = random.nextInt(size);
+            Item item = items[position];
+            items[position] = items[size - 1];
+            items[size - 1] = null; //Prevent loitering
+            size--;
+
+            //resize if necessary
+            if (size > 0 && size < items.length / 4) {
+                resize(items.length / 2);
+            }
+            return item;
+        }
+
+        // uniform random item, null if empty
+        private synchronized Item sample(ThreadLocalRandom random) {
+            if (size == 0) {
+                return null;
+            }
+            return items[random.nextInt(size)];
+        }
+
+        private void resize(int newSize) {
+            Item[] tempArray = (Item[]) new Object[newSize];
+            System.arraycopy(items, 0, tempArray, 0, size);
+            items = tempArray;
+        }
+    }
+
+    // construct an empty queue with one stripe per available core
+    public ConcurrentRandomizedQueue() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    // construct an empty queue with the given number of stripes
+    public ConcurrentRandomizedQueue(int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        stripes = (Stripe<Item>[]) new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<Item>();
+        }
+    }
+
+    // is the queue empty? only a snapshot when other threads are active
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // number of items, only a snapshot when other threads are active
+    public int size() {
+        int size = 0;
+        for (Stripe<Item> stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    // add the item to the calling thread's stripe
+    public void enqueue(Item item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+
+        localStripe.get().add(item);
+    }
+
+    // delete and return a random item, null if the queue is empty
+    public Item dequeue() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < DRAW_ATTEMPTS; attempt++) {
+            Stripe<Item> stripe = drawStripe(random);
+            if (stripe == null) {
+                break;
+            }
+            Item item = stripe.remove(random);
+            if (item != null) {
+                return item;
+            }
+        }
+
+        //Stripes keep emptying under us, take from any non-empty one
+        int start = random.nextInt(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            Item item = stripes[(start + i) % stripes.length].remove(random);
+            if (item != null) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    // return (but do not delete) a random item, null if the queue is empty
+    public Item sample() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < DRAW_ATTEMPTS; attempt++) {
+            Stripe<Item> stripe = drawStripe(random);
+            if (stripe == null) {
+                break;
+            }
+            Item item = stripe.sample(random);
+            if (item != null) {
+                return item;
+            }
+        }
+
+        int start = random.nextInt(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            Item item = stripes[(start + i) % stripes.length].sample(random);
+            if (item != null) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    // stripe chosen with probability proportional to its size, null if
+    // all stripes looked empty
+    private Stripe<Item> drawStripe(ThreadLocalRandom random) {
+        int[] sizes = new int[stripes.length];
+        int total = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            sizes[i] = stripes[i].size;
+            total += sizes[i];
+        }
+        if (total == 0) {
+            return null;
+        }
+
+        int target = random.nextInt(total);
+        for (int i = 0; i < stripes.length; i++) {
+            if (target < sizes[i]) {
+                return stripes[i];
+            }
+            target -= sizes[i];
+        }
+        return stripes[stripes.length - 1];
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int items = 1 << 20;
+        if (args.length > 0) {
+            items = Integer.parseInt(args[0]);
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            run(items, threads);
+        }
+    }
+
+    // every thread enqueues its share of items and dequeues as many;
+    // checks that every item is taken exactly once
+    private static void run(final int items, final int threads)
+            throws InterruptedException {
+        final ConcurrentRandomizedQueue<Integer> queue =
+                new ConcurrentRandomizedQueue<Integer>();
+        final AtomicIntegerArray taken = new AtomicIntegerArray(items);
+        final AtomicLong takenCount = new AtomicLong();
+
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int worker = t;
+            workers[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = worker; i < items; i += threads) {
+                        queue.enqueue(i);
+                        // dequeue every other enqueue to mix both operations
+                        if ((i & 1) == 1) {
+                            take(queue.dequeue());
+                        }
+                    }
+                    while (takenCount.get() < items) {
+                        take(queue.dequeue());
+                    }
+                }
+
+                private void take(Integer item) {
+                    if (item != null) {
+                        taken.incrementAndGet(item);
+                        takenCount.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int errors = 0;
+        for (int i = 0; i < items; i++) {
+            if (taken.get(i) != 1) {
+                errors++;
+            }
+        }
+        StdOut.println(threads + " threads: " + items + " items in "
+                + (elapsed / 1000000) + " ms, " + errors + " errors"
+                + (queue.isEmpty() ? "" : ", queue not empty"));
+    }
+}
@@ -1,5 +1,9 @@
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 
 public class Deque<Item> implements Iterable<Item> {
 
@@ -115,11 +119,64 @@ public class Deque<Item> implements Iterable<Item> {
         return result.item;
     }
 
+    // add all items to the front, keeping their order: afterwards
+    // items[0] is first
+    public void addAllFirst(Item[] items) {
+        checkNotNull(items);
+        for (int i = items.length - 1; i >= 0; i--) {
+            addFirst(items[i]);
+        }
+    }
+
+    public void addAllFirst(Collection<? extends Item> items) {
+        addAllFirst((Item[]) items.toArray());
+    }
+
+    // add all items to the back, keeping their order
+    public void addAllLast(Item[] items) {
+        checkNotNull(items);
+        for (Item item : items) {
+            addLast(item);
+        }
+    }
+
+    public void addAllLast(Collection<? extends Item> items) {
+        addAllLast((Item[]) items.toArray());
+    }
+
+    // remove up to max items from the front and pass them to consumer,
+    // returns number of items removed
+    public int drainTo(Consumer<? super Item> consumer, int max) {
+        int drained = 0;
+        while (drained < max && first != null) {
+            consumer.accept(removeFirst());
+            drained++;
+        }
+        return drained;
+    }
+
     @Override
     public Iterator<Item> iterator() {
         return new DequeIterator();
     }
 
+    // linked nodes can not be split in the middle without walking to it,
+    // so splits hand out batches of items taken from the iterator
+    @Override
+    public Spliterator<Item> spliterator() {
+        return Spliterators.spliterator(iterator(), size,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    // whole batch is checked before anything is added
+    private static void checkNotNull(Object[] items) {
+        for (Object item : items) {
+            if (item == null) {
+                throw new NullPointerException();
+            }
+        }
+    }
+
     private class DequeIterator implements Iterator<Item> {
 
         private Node current;
@@ -0,0 +1,166 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Deque of int values, stored unboxed in a circular array. Works like
+ * ResizingArrayDeque: capacity is a power of two, the array doubles when
+ * full and halves when a quarter full. Iteration goes from first to last
+ * through nextInt or forEach without boxing.
+ */
+public class IntDeque {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] items;
+    // index of the first item, items.length - 1 is the mask
+    private int head = 0;
+    private int size = 0;
+
+    public IntDeque() {
+        items = new int[MIN_CAPACITY];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void addFirst(int item) {
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+        size++;
+    }
+
+    public void addLast(int item) {
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+
+        items[(head + size) & (items.length - 1)] = item;
+        size++;
+    }
+
+    public int removeFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+
+        int item = items[head];
+        head = (head + 1) & (items.length - 1);
+        size--;
+
+        shrinkIfSparse();
+        return item;
+    }
+
+    public int removeLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+
+        int item = items[(head + size - 1) & (items.length - 1)];
+        size--;
+
+        shrinkIfSparse();
+        return item;
+    }
+
+    // calls action with every item, first to last
+    public void forEach(IntConsumer action) {
+        int mask = items.length - 1;
+        for (int i = 0; i < size; i++) {
+            action.accept(items[(head + i) & mask]);
+        }
+    }
+
+    public PrimitiveIterator.OfInt iterator() {
+        return new IntDequeIterator();
+    }
+
+    private void shrinkIfSparse() {
+        if (items.length > MIN_CAPACITY && size <= items.length / 4) {
+            resize(items.length / 2);
+        }
+    }
+
+    // newCapacity must be a power of two not smaller than size
+    private void resize(int newCapacity) {
+        int[] newItems = new int[newCapacity];
+        int firstPart = Math.min(size, items.length - head);
+        System.arraycopy(items, head, newItems, 0, firstPart);
+        System.arraycopy(items, 0, newItems, firstPart, size - firstPart);
+        items = newItems;
+        head = 0;
+    }
+
+    private class IntDequeIterator implements PrimitiveIterator.OfInt {
+
+        private int index = 0;
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public int nextInt() {
+            if (index >= size) {
+                throw new NoSuchElementException();
+            }
+
+            return items[(head + index++) & (items.length - 1)];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static void main(String[] args) {
+        IntDeque deque = new IntDeque();
+        try {
+            deque.removeFirst();
+        } catch (NoSuchElementException ex) {
+            StdOut.println("Throws no such element exception "
+                    + "when retrieving from empty queue");
+        }
+
+        for (int i = 0; i < 20; i++) {
+            deque.addFirst(-i);
+            deque.addLast(i);
+        }
+        printQueue(deque);
+
+        while (deque.size() > 4) {
+            deque.removeFirst();
+            deque.removeLast();
+        }
+        printQueue(deque);
+
+        long sum = 0;
+        PrimitiveIterator.OfInt iterator = deque.iterator();
+        while (iterator.hasNext()) {
+            sum += iterator.nextInt();
+        }
+        StdOut.println("Sum: " + sum);
+    }
+
+    private static void printQueue(IntDeque deque) {
+        StdOut.print("Queue: ");
+        deque.forEach(new IntConsumer() {
+            public void accept(int element) {
+                StdOut.print(element + " ");
+            }
+        });
+        StdOut.println();
+    }
+}
@@ -0,0 +1,166 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+/**
+ * Deque of long values, stored unboxed in a circular array. Works like
+ * ResizingArrayDeque: capacity is a power of two, the array doubles when
+ * full and halves when a quarter full. Iteration goes from first to last
+ * through nextLong or forEach without boxing.
+ */
+public class LongDeque {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] items;
+    // index of the first item, items.length - 1 is the mask
+    private int head = 0;
+    private int size = 0;
+
+    public LongDeque() {
+        items = new long[MIN_CAPACITY];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void addFirst(long item) {
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+        size++;
+    }
+
+    public void addLast(long item) {
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+
+        items[(head + size) & (items.length - 1)] = item;
+        size++;
+    }
+
+    public long removeFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+
+        long item = items[head];
+        head = (head + 1) & (items.length - 1);
+        size--;
+
+        shrinkIfSparse();
+        return item;
+    }
+
+    public long removeLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+
+        long item = items[(head + size - 1) & (items.length - 1)];
+        size--;
+
+        shrinkIfSparse();
+        return item;
+    }
+
+    // calls action with every item, first to last
+    public void forEach(LongConsumer action) {
+        int mask = items.length - 1;
+        for (int i = 0; i < size; i++) {
+            action.accept(items[(head + i) & mask]);
+        }
+    }
+
+    public PrimitiveIterator.OfLong iterator() {
+        return new LongDequeIterator();
+    }
+
+    private void shrinkIfSparse() {
+        if (items.length > MIN_CAPACITY && size <= items.length / 4) {
+            resize(items.length / 2);
+        }
+    }
+
+    // newCapacity must be a power of two not smaller than size
+    private void resize(int newCapacity) {
+        long[] newItems = new long[newCapacity];
+        int firstPart = Math.min(size, items.length - head);
+        System.arraycopy(items, head, newItems, 0, firstPart);
+        System.arraycopy(items, 0, newItems, firstPart, size - firstPart);
+        items = newItems;
+        head = 0;
+    }
+
+    private class LongDequeIterator implements PrimitiveIterator.OfLong {
+
+        private int index = 0;
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public long nextLong() {
+            if (index >= size) {
+                throw new NoSuchElementException();
+            }
+
+            return items[(head + index++) & (items.length - 1)];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static void main(String[] args) {
+        LongDeque deque = new LongDeque();
+        try {
+            deque.removeFirst();
+        } catch (NoSuchElementException ex) {
+            StdOut.println("Throws no such element exception "
+                    + "when retrieving from empty queue");
+        }
+
+        for (int i = 0; i < 20; i++) {
+            deque.addFirst(-i);
+            deque.addLast(i);
+        }
+        printQueue(deque);
+
+        while (deque.size() > 4) {
+            deque.removeFirst();
+            deque.removeLast();
+        }
+        printQueue(deque);
+
+        long sum = 0;
+        PrimitiveIterator.OfLong iterator = deque.iterator();
+        while (iterator.hasNext()) {
+            sum += iterator.nextLong();
+        }
+        StdOut.println("Sum: " + sum);
+    }
+
+    private static void printQueue(LongDeque deque) {
+        StdOut.print("Queue: ");
+        deque.forEach(new LongConsumer() {
+            public void accept(long element) {
+                StdOut.print(element + " ");
+            }
+        });
+        StdOut.println();
+    }
+}
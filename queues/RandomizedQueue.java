@@ -1,5 +1,8 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
 
 /**
  * Created by tomodoma on 2/15/14.
@@ -9,10 +12,26 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
     private Item[] items;
     private int first = 0;
     private int last = 0;
+    // number of enqueues and dequeues, lazy iterators fail on change
+    private int modCount = 0;
+    // source of random draws, StdRandom when null
+    private final SplittableRandom random;
 
     // construct an empty randomized queue
     public RandomizedQueue() {
         items = (Item[]) new Object[1];
+        random = null;
+    }
+
+    // construct an empty randomized queue drawing from its own generator,
+    // so queues in different threads neither contend nor share a stream
+    public RandomizedQueue(SplittableRandom random) {
+        if (random == null) {
+            throw new NullPointerException();
+        }
+
+        items = (Item[]) new Object[1];
+        this.random = random;
     }
 
     // is the queue empty?
@@ -37,6 +56,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         }
         items[last % items.length] = item;
         last++;
+        modCount++;
     }
 
     // delete and return a random item
@@ -45,12 +65,13 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             throw new NoSuchElementException();
         }
 
-        int randomPosition = StdRandom.uniform(first, last);
+        int randomPosition = first + uniform(last - first);
         swap(first % items.length, randomPosition % items.length);
 
         Item item = items[first % items.length];
         items[first % items.length] = null; //Prevent loitering
         first++;
+        modCount++;
 
         //resize if necessary
         if (last - first < items.length / 4) {
@@ -60,21 +81,81 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         return item;
     }
 
+    // delete k random items and put them into dst[0, k). Resizes at most once
+    public void dequeue(Item[] dst, int k) {
+        checkBatch(dst, k);
+        if (k > last - first) {
+            throw new NoSuchElementException();
+        }
+
+        //Partial shuffle: move a random remaining item to the front k times
+        for (int i = 0; i < k; i++) {
+            int randomPosition = first + i + uniform(last - first - i);
+            swap((first + i) % items.length, randomPosition % items.length);
+            dst[i] = items[(first + i) % items.length];
+            items[(first + i) % items.length] = null; //Prevent loitering
+        }
+        first += k;
+        modCount++;
+
+        int newSize = items.length;
+        while (last - first < newSize / 4) {
+            newSize /= 2;
+        }
+        if (newSize != items.length) {
+            resize(newSize);
+        }
+    }
+
     // return (but do not delete) a random item
     public Item sample() {
         if (isEmpty()) {
             throw new NoSuchElementException();
         }
 
-        int randomPosition = StdRandom.uniform(first, last);
+        int randomPosition = first + uniform(last - first);
         return items[randomPosition % items.length];
     }
 
+    // put k random items into dst[0, k) without deleting them. Without
+    // replacement the items are distinct, found by a partial Fisher-Yates
+    // which does not reorder the queue
+    public void sample(Item[] dst, int k, boolean withReplacement) {
+        checkBatch(dst, k);
+        int size = last - first;
+        if (k > 0 && size == 0 || !withReplacement && k > size) {
+            throw new NoSuchElementException();
+        }
+
+        if (withReplacement) {
+            for (int i = 0; i < k; i++) {
+                dst[i] = items[(first + uniform(size)) % items.length];
+            }
+            return;
+        }
+
+        SparsePermutation permutation = new SparsePermutation();
+        for (int i = 0; i < k; i++) {
+            int randomIndex = i + uniform(size - i);
+            int position = permutation.get(randomIndex);
+            permutation.put(randomIndex, permutation.get(i));
+            dst[i] = items[(first + position) % items.length];
+        }
+    }
+
     // return an independent iterator over items in random order
     public Iterator<Item> iterator() {
         return new RandomizedQueueIterator();
     }
 
+    // return an iterator over items in random order which copies nothing:
+    // each next() takes O(1) time and the iterator keeps O(k) memory after
+    // k items. Enqueue or dequeue while it is in use makes it throw
+    // ConcurrentModificationException
+    public Iterator<Item> lazyIterator() {
+        return new LazyRandomizedQueueIterator();
+    }
+
     private void resize(int newSize) {
         Item[] tempArray = (Item[]) new Object[newSize];
         int i = 0;
@@ -86,6 +167,36 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         last = i;
     }
 
+    // uniform int in [0, n), n > 0. Lemire's multiply-shift takes the high
+    // half of a 32-bit random times n; it rejects only when the low half
+    // is below 2^32 mod n, so there is no modulo bias and almost never a
+    // second draw
+    private int uniform(int n) {
+        if (random == null) {
+            return StdRandom.uniform(n);
+        }
+
+        long product = (random.nextInt() & 0xFFFFFFFFL) * n;
+        long low = product & 0xFFFFFFFFL;
+        if (low < n) {
+            long threshold = (1L << 32) % n;
+            while (low < threshold) {
+                product = (random.nextInt() & 0xFFFFFFFFL) * n;
+                low = product & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (product >>> 32);
+    }
+
+    private static void checkBatch(Object[] dst, int k) {
+        if (dst == null) {
+            throw new NullPointerException();
+        }
+        if (k < 0 || k > dst.length) {
+            throw new IllegalArgumentException();
+        }
+    }
+
     private void swap(int p, int q) {
         Item tmp = items[p];
         items[p] = items[q];
@@ -102,7 +213,12 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             for (int i = 0, j = first; j < last; i++, j++) {
                 itemsCopy[i] = items[j % items.length];
             }
-            StdRandom.shuffle(itemsCopy);
+            for (int i = itemsCopy.length - 1; i > 0; i--) {
+                int j = uniform(i + 1);
+                Item tmp = itemsCopy[i];
+                itemsCopy[i] = itemsCopy[j];
+                itemsCopy[j] = tmp;
+            }
         }
 
         @Override
@@ -125,6 +241,107 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         }
     }
 
+    // incremental Fisher-Yates over positions [0, size): step i swaps
+    // position i with a random one in [i, size) and returns it. Only
+    // positions that were swapped away from their identity are stored
+    private class LazyRandomizedQueueIterator implements Iterator<Item> {
+
+        private final int expectedModCount = modCount;
+        private final int size = last - first;
+        private final SparsePermutation permutation = new SparsePermutation();
+        private int index = 0;
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public Item next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (index >= size) {
+                throw new NoSuchElementException();
+            }
+
+            int randomIndex = index + uniform(size - index);
+            int position = permutation.get(randomIndex);
+            permutation.put(randomIndex, permutation.get(index));
+            index++;
+            return items[(first + position) % items.length];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // int to int map with open addressing; absent keys map to themselves
+    private static class SparsePermutation {
+
+        private static final int EMPTY = -1;
+
+        private int[] keys;
+        private int[] values;
+        private int count = 0;
+
+        private SparsePermutation() {
+            keys = new int[16];
+            values = new int[16];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        private int get(int key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return key;
+        }
+
+        private void put(int key, int value) {
+            //Keep load factor at most 1/2
+            if (2 * (count + 1) > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                count++;
+            }
+            values[slot] = value;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            Arrays.fill(keys, EMPTY);
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
     public static void main(String[] args) {
         String nullPointerMessage = "Throws null pointer exception when adding null";
         String noSuchElementMessage = "Throws no such element exception "
@@ -191,6 +408,48 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         printQueue(queue);
 
         assertEmpty(queue);
+
+        // Read only a few items of a large queue lazily
+        for (int i = 0; i < 1000000; i++) {
+            queue.enqueue(i);
+        }
+        Iterator<Integer> lazy = queue.lazyIterator();
+        StdOut.print("First 5 of " + queue.size() + " lazily: ");
+        for (int i = 0; i < 5; i++) {
+            StdOut.print(lazy.next() + " ");
+        }
+        StdOut.println();
+
+        Integer[] batch = new Integer[10];
+        queue.sample(batch, batch.length, false);
+        StdOut.println("Sample of 10: " + Arrays.toString(batch));
+        queue.dequeue(batch, batch.length);
+        StdOut.println("Dequeue 10: " + Arrays.toString(batch)
+                + ", left " + queue.size());
+        try {
+            lazy.next();
+        } catch (ConcurrentModificationException ex) {
+            StdOut.println("Lazy iterator throws concurrent modification "
+                    + "exception after dequeue");
+        }
+
+        queue.dequeue(new Integer[queue.size()], queue.size());
+        assertEmpty(queue);
+
+        // Queues seeded alike give the same order
+        RandomizedQueue<Integer> seeded =
+                new RandomizedQueue<Integer>(new SplittableRandom(7));
+        RandomizedQueue<Integer> twin =
+                new RandomizedQueue<Integer>(new SplittableRandom(7));
+        for (int i = 0; i < 10; i++) {
+            seeded.enqueue(i);
+            twin.enqueue(i);
+        }
+        boolean same = true;
+        while (!seeded.isEmpty()) {
+            same &= seeded.dequeue().equals(twin.dequeue());
+        }
+        StdOut.println(same ? "Same seed, same order" : "Same seed, different order");
     }
 
     private static void assertEmpty(RandomizedQueue<Integer> queue) {
@@ -0,0 +1,340 @@
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
+
+/**
+ * Deque backed by a circular array. Capacity is always a power of two,
+ * so indices wrap with a bit mask. The array doubles when full and halves
+ * when it is a quarter full, so a mix of adds and removes never resizes
+ * on every operation.
+ */
+public class ResizingArrayDeque<Item> implements Iterable<Item> {
+
+    private static final int MIN_CAPACITY = 8;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private Item[] items;
+    // index of the first item, items.length - 1 is the mask
+    private int head = 0;
+    private int size = 0;
+
+    public ResizingArrayDeque() {
+        items = (Item[]) new Object[MIN_CAPACITY];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void addFirst(Item item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+        size++;
+    }
+
+    public void addLast(Item item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+
+        items[(head + size) & (items.length - 1)] = item;
+        size++;
+    }
+
+    public Item removeFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+
+        Item item = items[head];
+        items[head] = null; // Prevent loitering
+        head = (head + 1) & (items.length - 1);
+        size--;
+
+        shrinkIfSparse();
+        return item;
+    }
+
+    public Item removeLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+
+        int tail = (head + size - 1) & (items.length - 1);
+        Item item = items[tail];
+        items[tail] = null; // Prevent loitering
+        size--;
+
+        shrinkIfSparse();
+        return item;
+    }
+
+    // add all items to the front, keeping their order: afterwards
+    // items[0] is first. Resizes at most once
+    public void addAllFirst(Item[] newItems) {
+        checkNotNull(newItems);
+        ensureCapacity(size + newItems.length);
+
+        int mask = items.length - 1;
+        head = (head - newItems.length) & mask;
+        copyIn(newItems, head);
+        size += newItems.length;
+    }
+
+    public void addAllFirst(Collection<? extends Item> newItems) {
+        addAllFirst((Item[]) newItems.toArray());
+    }
+
+    // add all items to the back, keeping their order. Resizes at most once
+    public void addAllLast(Item[] newItems) {
+        checkNotNull(newItems);
+        ensureCapacity(size + newItems.length);
+
+        copyIn(newItems, (head + size) & (items.length - 1));
+        size += newItems.length;
+    }
+
+    public void addAllLast(Collection<? extends Item> newItems) {
+        addAllLast((Item[]) newItems.toArray());
+    }
+
+    // remove up to max items from the front and pass them to consumer,
+    // returns number of items removed. Resizes at most once
+    public int drainTo(Consumer<? super Item> consumer, int max) {
+        int drained = 0;
+        int mask = items.length - 1;
+        while (drained < max && size > 0) {
+            Item item = items[head];
+            items[head] = null; // Prevent loitering
+            head = (head + 1) & mask;
+            size--;
+            drained++;
+            consumer.accept(item);
+        }
+
+        int newCapacity = items.length;
+        while (newCapacity > MIN_CAPACITY && size <= newCapacity / 4) {
+            newCapacity /= 2;
+        }
+        if (newCapacity != items.length) {
+            resize(newCapacity);
+        }
+        return drained;
+    }
+
+    @Override
+    public Iterator<Item> iterator() {
+        return new ResizingArrayDequeIterator();
+    }
+
+    // splits in O(1) by halving the remaining index range
+    @Override
+    public Spliterator<Item> spliterator() {
+        return new ResizingArrayDequeSpliterator(items, head, 0, size);
+    }
+
+    private void shrinkIfSparse() {
+        if (items.length > MIN_CAPACITY && size <= items.length / 4) {
+            resize(items.length / 2);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        // negative capacity means size + added overflowed
+        if (capacity < 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("Deque too large");
+        }
+        int newCapacity = items.length;
+        while (newCapacity < capacity) {
+            newCapacity *= 2;
+        }
+        if (newCapacity != items.length) {
+            resize(newCapacity);
+        }
+    }
+
+    // copy newItems into the ring starting at index start
+    private void copyIn(Item[] newItems, int start) {
+        int firstPart = Math.min(newItems.length, items.length - start);
+        System.arraycopy(newItems, 0, items, start, firstPart);
+        System.arraycopy(newItems, firstPart, items, 0, newItems.length - firstPart);
+    }
+
+    // whole batch is checked before anything is added
+    private static void checkNotNull(Object[] items) {
+        for (Object item : items) {
+            if (item == null) {
+                throw new NullPointerException();
+            }
+        }
+    }
+
+    // newCapacity must be a power of two not smaller than size
+    private void resize(int newCapacity) {
+        Item[] newItems = (Item[]) new Object[newCapacity];
+        int firstPart = Math.min(size, items.length - head);
+        System.arraycopy(items, head, newItems, 0, firstPart);
+        System.arraycopy(items, 0, newItems, firstPart, size - firstPart);
+        items = newItems;
+        head = 0;
+    }
+
+    private class ResizingArrayDequeIterator implements Iterator<Item> {
+
+        private int index = 0;
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public Item next() {
+            if (index >= size) {
+                throw new NoSuchElementException();
+            }
+
+            return items[(head + index++) & (items.length - 1)];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class ResizingArrayDequeSpliterator implements Spliterator<Item> {
+
+        private final Item[] ring;
+        private final int ringHead;
+        // remaining positions [index, end), counted from ringHead
+        private int index;
+        private final int end;
+
+        private ResizingArrayDequeSpliterator(Item[] ring, int ringHead,
+                                              int index, int end) {
+            this.ring = ring;
+            this.ringHead = ringHead;
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Item> action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(ring[(ringHead + index++) & (ring.length - 1)]);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Item> action) {
+            int mask = ring.length - 1;
+            for (; index < end; index++) {
+                action.accept(ring[(ringHead + index) & mask]);
+            }
+        }
+
+        @Override
+        public Spliterator<Item> trySplit() {
+            int mid = (index + end) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            Spliterator<Item> prefix =
+                    new ResizingArrayDequeSpliterator(ring, ringHead, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED
+                    | Spliterator.SUBSIZED | Spliterator.NONNULL;
+        }
+    }
+
+    public static void main(String[] args) {
+        ResizingArrayDeque<Integer> deque = new ResizingArrayDeque<Integer>();
+        try {
+            deque.addFirst(null);
+        } catch (NullPointerException ex) {
+            StdOut.println("Throws null pointer exception when adding null");
+        }
+
+        try {
+            deque.removeLast();
+        } catch (NoSuchElementException ex) {
+            StdOut.println("Throws no such element exception "
+                    + "when retrieving from empty queue");
+        }
+
+        // Grow well past the initial capacity from both ends
+        for (int i = 0; i < 20; i++) {
+            deque.addFirst(-i);
+            deque.addLast(i);
+        }
+        printQueue(deque);
+
+        // Shrink back, alternating ends
+        while (deque.size() > 4) {
+            deque.removeFirst();
+            deque.removeLast();
+        }
+        printQueue(deque);
+
+        StdOut.println("Remove first: " + deque.removeFirst());
+        StdOut.println("Remove last: " + deque.removeLast());
+        StdOut.println("Remove first: " + deque.removeFirst());
+        StdOut.println("Remove last: " + deque.removeLast());
+        StdOut.println(deque.isEmpty() ? "Queue is empty" : "Queue not empty");
+
+        Integer[] batch = new Integer[100];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = i;
+        }
+        deque.addAllLast(batch);
+        deque.addAllFirst(batch);
+        StdOut.println("Parallel sum: " + StreamSupport.stream(deque.spliterator(), true)
+                .mapToLong(Integer::longValue).sum());
+
+        int drained = deque.drainTo(new Consumer<Integer>() {
+            public void accept(Integer element) {
+            }
+        }, 150);
+        StdOut.println("Drained " + drained + ", left " + deque.size());
+    }
+
+    private static void printQueue(ResizingArrayDeque<Integer> deque) {
+        StdOut.print("Queue: ");
+        for (int element : deque) {
+            StdOut.print(element + " ");
+        }
+        StdOut.println();
+    }
+}
@@ -0,0 +1,370 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Deque which keeps only the segments of items near its ends on the heap.
+ * Items are stored in fixed-size segments, and the two segments at each
+ * end stay in memory. A segment further in is written to a memory-mapped
+ * file through the serializer and dropped from the heap. It is read back
+ * when it becomes the first or last segment again. Both ends therefore
+ * work at in-memory speed, and the number of items is limited by disk
+ * rather than heap.
+ *
+ * Spill files are temporary; close deletes the ones still in use.
+ */
+public class SpillingDeque<Item> implements Iterable<Item>, Closeable {
+
+    private static final int DEFAULT_SEGMENT_SIZE = 1 << 14;
+
+    // converts items to and from bytes of spill files
+    public interface Serializer<Item> {
+
+        // number of bytes write will put for item
+        int size(Item item);
+
+        void write(Item item, ByteBuffer buffer);
+
+        Item read(ByteBuffer buffer);
+    }
+
+    private final Serializer<Item> serializer;
+    private final int segmentSize;
+    private final File directory;
+
+    private Segment first;
+    private Segment last;
+    private int size = 0;
+
+    private class Segment {
+
+        // live items are items[start, end); null while spilled
+        private Item[] items;
+        private int start;
+        private int end;
+        // spill file, null while in memory
+        private File file;
+
+        private Segment next;
+        private Segment prev;
+
+        private Segment(int position) {
+            this.items = (Item[]) new Object[segmentSize];
+            this.start = position;
+            this.end = position;
+        }
+    }
+
+    public SpillingDeque(Serializer<Item> serializer) {
+        this(serializer, DEFAULT_SEGMENT_SIZE,
+                new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    public SpillingDeque(Serializer<Item> serializer, int segmentSize,
+                         File directory) {
+        if (serializer == null || directory == null) {
+            throw new NullPointerException();
+        }
+        if (segmentSize < 2) {
+            throw new IllegalArgumentException();
+        }
+
+        this.serializer = serializer;
+        this.segmentSize = segmentSize;
+        this.directory = directory;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void addFirst(Item item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+
+        if (first == null) {
+            first = new Segment(segmentSize / 2);
+            last = first;
+        } else if (first.start == 0) {
+            Segment oldFirst = first;
+            first = new Segment(segmentSize);
+            first.next = oldFirst;
+            oldFirst.prev = first;
+            spillIfCold(oldFirst.next);
+        }
+
+        first.items[--first.start] = item;
+        size++;
+    }
+
+    public void addLast(Item item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+
+        if (last == null) {
+            last = new Segment(segmentSize / 2);
+            first = last;
+        } else if (last.end == segmentSize) {
+            Segment oldLast = last;
+            last = new Segment(0);
+            last.prev = oldLast;
+            oldLast.next = last;
+            spillIfCold(oldLast.prev);
+        }
+
+        last.items[last.end++] = item;
+        size++;
+    }
+
+    public Item removeFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+
+        // an emptied first segment is kept until the next removal, so
+        // alternating adds and removes at a segment edge reuse it
+        while (first.start == first.end) {
+            first = first.next;
+            first.prev = null;
+            load(first);
+        }
+
+        Item item = first.items[first.start];
+        first.items[first.start++] = null; // Prevent loitering
+        size--;
+
+        if (size == 0) {
+            clearTo(first);
+        }
+        return item;
+    }
+
+    public Item removeLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+
+        while (last.start == last.end) {
+            last = last.prev;
+            last.next = null;
+            load(last);
+        }
+
+        Item item = last.items[--last.end];
+        last.items[last.end] = null; // Prevent loitering
+        size--;
+
+        if (size == 0) {
+            clearTo(last);
+        }
+        return item;
+    }
+
+    // iterates from first to last; spilled segments are read from their
+    // files without bringing them back into the deque
+    @Override
+    public Iterator<Item> iterator() {
+        return new SpillingDequeIterator();
+    }
+
+    // deletes spill files, the deque must not be used afterwards
+    @Override
+    public void close() {
+        for (Segment segment = first; segment != null; segment = segment.next) {
+            if (segment.file != null) {
+                segment.file.delete();
+                segment.file = null;
+            }
+        }
+        first = null;
+        last = null;
+        size = 0;
+    }
+
+    // spill a segment that moved third from an end. The two segments at
+    // each end stay in memory, so going back and forth over a segment
+    // edge spills only after a full segment of adds in one direction
+    private void spillIfCold(Segment segment) {
+        if (segment == null || segment.file != null
+                || segment == first || segment == first.next
+                || segment == last || segment == last.prev) {
+            return;
+        }
+        spill(segment);
+    }
+
+    // leave only the given, in-memory segment, with room on both sides
+    private void clearTo(Segment segment) {
+        for (Segment other = first; other != null; other = other.next) {
+            if (other.file != null) {
+                other.file.delete();
+                other.file = null;
+            }
+        }
+        segment.start = segmentSize / 2;
+        segment.end = segmentSize / 2;
+        segment.prev = null;
+        segment.next = null;
+        first = segment;
+        last = segment;
+    }
+
+    // file layout: item count, then length and bytes of every item
+    private void spill(Segment segment) {
+        long bytes = 4;
+        for (int i = segment.start; i < segment.end; i++) {
+            bytes += 4 + serializer.size(segment.items[i]);
+        }
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Segment too large to spill");
+        }
+
+        try {
+            File file = File.createTempFile("deque-segment", ".bin", directory);
+            try (FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer =
+                        channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+                buffer.putInt(segment.end - segment.start);
+                for (int i = segment.start; i < segment.end; i++) {
+                    int itemSize = serializer.size(segment.items[i]);
+                    buffer.putInt(itemSize);
+                    int itemStart = buffer.position();
+                    serializer.write(segment.items[i], buffer);
+                    if (buffer.position() - itemStart != itemSize) {
+                        throw new IllegalStateException(
+                                "Serializer wrote other size than it reported");
+                    }
+                }
+            }
+            segment.file = file;
+            segment.items = null;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void load(Segment segment) {
+        if (segment.file == null) {
+            return;
+        }
+
+        segment.items = read(segment);
+        segment.file.delete();
+        segment.file = null;
+    }
+
+    // items of spilled segment, placed at the same positions as before
+    private Item[] read(Segment segment) {
+        Item[] items = (Item[]) new Object[segmentSize];
+        try (FileChannel channel = FileChannel.open(segment.file.toPath(),
+                StandardOpenOption.READ)) {
+            MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                int itemSize = buffer.getInt();
+                ByteBuffer itemBytes = buffer.slice();
+                itemBytes.limit(itemSize);
+                items[segment.start + i] = serializer.read(itemBytes);
+                buffer.position(buffer.position() + itemSize);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return items;
+    }
+
+    private class SpillingDequeIterator implements Iterator<Item> {
+
+        private Segment segment = first;
+        private Item[] items = segment == null ? null : segment.items;
+        private int index = segment == null ? 0 : segment.start;
+
+        @Override
+        public boolean hasNext() {
+            while (segment != null && index >= segment.end) {
+                segment = segment.next;
+                if (segment != null) {
+                    items = segment.file == null ? segment.items : read(segment);
+                    index = segment.start;
+                }
+            }
+            return segment != null;
+        }
+
+        @Override
+        public Item next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return items[index++];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static void main(String[] args) {
+        int items = 1000000;
+        if (args.length > 0) {
+            items = Integer.parseInt(args[0]);
+        }
+
+        Serializer<Integer> integers = new Serializer<Integer>() {
+            public int size(Integer item) {
+                return 4;
+            }
+
+            public void write(Integer item, ByteBuffer buffer) {
+                buffer.putInt(item);
+            }
+
+            public Integer read(ByteBuffer buffer) {
+                return buffer.getInt();
+            }
+        };
+
+        SpillingDeque<Integer> deque = new SpillingDeque<Integer>(integers, 1024,
+                new File(System.getProperty("java.io.tmpdir")));
+        try {
+            for (int i = 0; i < items; i++) {
+                deque.addLast(i);
+                deque.addFirst(-i - 1);
+            }
+            StdOut.println("Size: " + deque.size());
+
+            long sum = 0;
+            for (int element : deque) {
+                sum += element;
+            }
+            StdOut.println("Sum: " + sum);
+
+            boolean ordered = true;
+            for (int i = items - 1; i >= 0; i--) {
+                ordered &= deque.removeLast() == i;
+                ordered &= deque.removeFirst() == -i - 1;
+            }
+            StdOut.println(ordered ? "Order preserved" : "Order broken");
+            StdOut.println(deque.isEmpty() ? "Queue is empty" : "Queue not empty");
+        } finally {
+            deque.close();
+        }
+    }
+}
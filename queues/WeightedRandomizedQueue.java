@@ -0,0 +1,252 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Randomized queue where each item is drawn with probability proportional
+ * to its weight. Items and weights are kept in dense arrays with a Fenwick
+ * tree of weight prefix sums over them. A draw walks down the tree, so
+ * dequeue and sample take O(log n). Removal moves the last item into the
+ * freed slot. The tree is rebuilt whenever the arrays resize, and also
+ * when the total weight falls far below its peak since the last rebuild:
+ * removing a weight that dominated the rest leaves rounding error of its
+ * size in the sums, which would otherwise swamp the remaining weights.
+ */
+public class WeightedRandomizedQueue<Item> implements Iterable<Item> {
+
+    // rebuild once total weight drops below this fraction of its peak
+    private static final double REBUILD_FRACTION = 0x1.0p-20;
+
+    private Item[] items;
+    private double[] weights;
+    // Fenwick tree, tree[i] sums weights (i - (i & -i), i], 1-based
+    private double[] tree;
+    private int size = 0;
+    // largest total weight since the tree was last built
+    private double peakWeight = 0.0d;
+    // source of random draws, StdRandom when null
+    private final SplittableRandom random;
+
+    // construct an empty weighted randomized queue
+    public WeightedRandomizedQueue() {
+        this.random = null;
+        allocate(1);
+    }
+
+    // construct an empty weighted randomized queue drawing from its own
+    // generator
+    public WeightedRandomizedQueue(SplittableRandom random) {
+        if (random == null) {
+            throw new NullPointerException();
+        }
+
+        this.random = random;
+        allocate(1);
+    }
+
+    // copy of other sharing its random source
+    private WeightedRandomizedQueue(WeightedRandomizedQueue<Item> other) {
+        this.random = other.random;
+        this.items = other.items.clone();
+        this.weights = other.weights.clone();
+        this.tree = other.tree.clone();
+        this.size = other.size;
+        this.peakWeight = other.peakWeight;
+    }
+
+    // is the queue empty?
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // return the number of items on the queue
+    public int size() {
+        return size;
+    }
+
+    // sum of weights of all items
+    public double totalWeight() {
+        return tree[items.length];
+    }
+
+    // add the item, weight must be positive and finite
+    public void enqueue(Item item, double weight) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        if (!(weight > 0.0d) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Weight must be positive and finite");
+        }
+
+        //Resize if necessary
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+        items[size] = item;
+        weights[size] = weight;
+        add(size, weight);
+        size++;
+        peakWeight = Math.max(peakWeight, totalWeight());
+    }
+
+    // delete and return a random item, chosen in proportion to weight
+    public Item dequeue() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+
+        int position = select();
+        Item item = items[position];
+
+        //Move the last item into the freed slot
+        int lastPosition = size - 1;
+        if (position != lastPosition) {
+            add(position, weights[lastPosition] - weights[position]);
+            items[position] = items[lastPosition];
+            weights[position] = weights[lastPosition];
+        }
+        add(lastPosition, -weights[lastPosition]);
+        items[lastPosition] = null; //Prevent loitering
+        weights[lastPosition] = 0.0d;
+        size--;
+
+        //resize if necessary, otherwise rebuild if sums lost precision
+        if (size < items.length / 4) {
+            resize(items.length / 2);
+        } else if (!(totalWeight() > peakWeight * REBUILD_FRACTION)) {
+            buildTree();
+        }
+
+        return item;
+    }
+
+    // return (but do not delete) a random item, chosen in proportion to weight
+    public Item sample() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+
+        return items[select()];
+    }
+
+    // return an independent iterator over items in weighted random order,
+    // as if they were dequeued one by one
+    public Iterator<Item> iterator() {
+        return new WeightedRandomizedQueueIterator();
+    }
+
+    // position of an item drawn in proportion to weight: walks down the
+    // tree to the first position whose prefix sum exceeds a uniform target
+    private int select() {
+        double target = uniform() * totalWeight();
+        int position = 0;
+        for (int step = items.length; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= items.length && tree[next] <= target) {
+                position = next;
+                target -= tree[next];
+            }
+        }
+        //Rounding in the tree may push the walk past the last item
+        return Math.min(position, size - 1);
+    }
+
+    // add delta to weight at position, 0-based
+    private void add(int position, double delta) {
+        for (int i = position + 1; i <= items.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // capacity must be a power of two
+    private void allocate(int capacity) {
+        items = (Item[]) new Object[capacity];
+        weights = new double[capacity];
+        tree = new double[capacity + 1];
+    }
+
+    // copies items and weights and builds the tree
+    private void resize(int newSize) {
+        Item[] oldItems = items;
+        double[] oldWeights = weights;
+        allocate(newSize);
+        System.arraycopy(oldItems, 0, items, 0, size);
+        System.arraycopy(oldWeights, 0, weights, 0, size);
+        buildTree();
+    }
+
+    // builds the tree from weights in O(n), dropping rounding error
+    private void buildTree() {
+        Arrays.fill(tree, 0.0d);
+        for (int i = 1; i < tree.length; i++) {
+            tree[i] += weights[i - 1];
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+        peakWeight = totalWeight();
+    }
+
+    private double uniform() {
+        if (random == null) {
+            return StdRandom.uniform();
+        }
+        return random.nextDouble();
+    }
+
+    private class WeightedRandomizedQueueIterator implements Iterator<Item> {
+
+        private final WeightedRandomizedQueue<Item> remaining =
+                new WeightedRandomizedQueue<Item>(WeightedRandomizedQueue.this);
+
+        @Override
+        public boolean hasNext() {
+            return !remaining.isEmpty();
+        }
+
+        @Override
+        public Item next() {
+            return remaining.dequeue();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static void main(String[] args) {
+        WeightedRandomizedQueue<String> queue = new WeightedRandomizedQueue<String>();
+        try {
+            queue.enqueue("A", 0.0d);
+        } catch (IllegalArgumentException ex) {
+            StdOut.println("Throws illegal argument exception for zero weight");
+        }
+
+        queue.enqueue("A", 1.0d);
+        queue.enqueue("B", 2.0d);
+        queue.enqueue("C", 7.0d);
+        StdOut.println("Total weight: " + queue.totalWeight());
+
+        int draws = 100000;
+        int[] counts = new int[3];
+        for (int i = 0; i < draws; i++) {
+            counts[queue.sample().charAt(0) - 'A']++;
+        }
+        StdOut.printf("Sampled A %.3f, B %.3f, C %.3f\n", (double) counts[0] / draws,
+                (double) counts[1] / draws, (double) counts[2] / draws);
+
+        StdOut.print("Weighted order: ");
+        for (String item : queue) {
+            StdOut.print(item + " ");
+        }
+        StdOut.println();
+
+        while (!queue.isEmpty()) {
+            StdOut.println("Dequeue: " + queue.dequeue());
+        }
+        StdOut.println(queue.isEmpty() ? "Queue is empty" : "Queue not empty");
+    }
+}
@@ -0,0 +1,204 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Chase-Lev work-stealing deque. One owner thread pushes and pops items at
+ * the bottom without locking; any number of thief threads steal items from
+ * the top with a single CAS. The backing circular array grows when full.
+ *
+ * Only the owner may call push and pop. pop and steal return null when
+ * the deque is empty, and steal also returns null when it loses a race
+ * for the last item or with another thief, in which case it may be retried.
+ */
+public class WorkStealingDeque<Item> {
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    // next index to steal from, only ever incremented
+    private final AtomicLong top = new AtomicLong();
+    // next index to push to, written only by the owner
+    private volatile long bottom = 0;
+    private volatile CircularArray<Item> array =
+            new CircularArray<Item>(INITIAL_CAPACITY);
+
+    private static class CircularArray<Item> {
+
+        private final AtomicReferenceArray<Item> items;
+        private final int mask;
+
+        private CircularArray(int capacity) {
+            items = new AtomicReferenceArray<Item>(capacity);
+            mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return mask + 1;
+        }
+
+        private Item get(long index) {
+            return items.get((int) index & mask);
+        }
+
+        private void set(long index, Item item) {
+            items.set((int) index & mask, item);
+        }
+
+        // copy of items [top, bottom) into array twice as large
+        private CircularArray<Item> grow(long top, long bottom) {
+            CircularArray<Item> grown = new CircularArray<Item>(capacity() * 2);
+            for (long i = top; i < bottom; i++) {
+                grown.set(i, get(i));
+            }
+            return grown;
+        }
+    }
+
+    // is the deque empty? only a snapshot when other threads are active
+    public boolean isEmpty() {
+        return bottom <= top.get();
+    }
+
+    // number of items, only a snapshot when other threads are active
+    public int size() {
+        return (int) Math.max(0, bottom - top.get());
+    }
+
+    // owner only: add item at the bottom
+    public void push(Item item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+
+        long b = bottom;
+        long t = top.get();
+        CircularArray<Item> a = array;
+        if (b - t >= a.capacity()) {
+            a = a.grow(t, b);
+            array = a;
+        }
+        a.set(b, item);
+        // publishes the item to thieves
+        bottom = b + 1;
+    }
+
+    // owner only: remove and return the bottom item, null if empty
+    public Item pop() {
+        long b = bottom - 1;
+        CircularArray<Item> a = array;
+        // volatile write followed by volatile read of top keeps thieves
+        // from taking the same item without noticing each other
+        bottom = b;
+        long t = top.get();
+
+        if (t > b) {
+            // was empty
+            bottom = b + 1;
+            return null;
+        }
+
+        Item item = a.get(b);
+        if (t < b) {
+            // more than one item left, no thief can reach this one
+            a.set(b, null); // Prevent loitering
+            return item;
+        }
+
+        // last item, race thieves for it
+        if (!top.compareAndSet(t, t + 1)) {
+            item = null;
+        } else {
+            a.set(b, null); // Prevent loitering
+        }
+        bottom = b + 1;
+        return item;
+    }
+
+    // any thread: remove and return the top item, null if empty or
+    // if another thread took it first
+    public Item steal() {
+        long t = top.get();
+        long b = bottom;
+        if (t >= b) {
+            return null;
+        }
+
+        CircularArray<Item> a = array;
+        Item item = a.get(t);
+        if (!top.compareAndSet(t, t + 1)) {
+            return null;
+        }
+        // the slot is not cleared: the owner may already be reusing it
+        return item;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int items = 1 << 20;
+        if (args.length > 0) {
+            items = Integer.parseInt(args[0]);
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int thieves = 0; thieves <= Math.max(1, cores - 1); thieves++) {
+            run(items, thieves);
+        }
+    }
+
+    // owner pushes all items in small batches and pops some of them while
+    // thieves steal; checks that every item is taken exactly once
+    private static void run(final int items, int thieves)
+            throws InterruptedException {
+        final WorkStealingDeque<Integer> deque = new WorkStealingDeque<Integer>();
+        final AtomicIntegerArray taken = new AtomicIntegerArray(items);
+        final AtomicLong takenCount = new AtomicLong();
+
+        Thread[] threads = new Thread[thieves];
+        for (int i = 0; i < thieves; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    while (takenCount.get() < items) {
+                        Integer item = deque.steal();
+                        if (item != null) {
+                            taken.incrementAndGet(item);
+                            takenCount.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (int i = 0; i < items; i++) {
+            deque.push(i);
+            // pop every fourth push to mix both ends
+            if ((i & 3) == 3) {
+                Integer item = deque.pop();
+                if (item != null) {
+                    taken.incrementAndGet(item);
+                    takenCount.incrementAndGet();
+                }
+            }
+        }
+        Integer item;
+        while ((item = deque.pop()) != null) {
+            taken.incrementAndGet(item);
+            takenCount.incrementAndGet();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int errors = 0;
+        for (int i = 0; i < items; i++) {
+            if (taken.get(i) != 1) {
+                errors++;
+            }
+        }
+        StdOut.println(thieves + " thieves: " + items + " items in "
+                + (elapsed / 1000000) + " ms, " + errors + " errors");
+    }
+}